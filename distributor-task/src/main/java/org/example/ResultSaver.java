@@ -5,9 +5,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.Enumeration;
 import java.util.Map;
@@ -18,6 +23,10 @@ import java.util.zip.ZipFile;
 public class ResultSaver {
     private static final ObjectMapper objectMapper = new ObjectMapper();
     private static final Path RESULT_FILE = Paths.get("best_routes.json");
+    // Бинарная матрица из worker-task (MatrixFile): заголовок 16 байт little-endian, число городов по смещению 8
+    private static final String MATRIX_ENTRY_NAME = "matrix.bin";
+    private static final int MATRIX_MAGIC = 0x58544D47;
+    private static final int MATRIX_HEADER_SIZE = 16;
 
 
     @End
@@ -30,6 +39,14 @@ public class ResultSaver {
         }
 
         try (ZipFile zipFile = new ZipFile(zipPath)) {
+            // В бинарном формате число городов записано в заголовке, тело матрицы не читается
+            ZipEntry matrixEntry = zipFile.getEntry(MATRIX_ENTRY_NAME);
+            if (matrixEntry != null) {
+                try (InputStream is = zipFile.getInputStream(matrixEntry)) {
+                    return readMatrixSize(is);
+                }
+            }
+
             ZipEntry jsonEntry = findFirstJsonEntry(zipFile);
 
             if (jsonEntry == null) {
@@ -46,6 +63,18 @@ public class ResultSaver {
         }
     }
 
+    private static int readMatrixSize(InputStream is) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(is.readNBytes(MATRIX_HEADER_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.remaining() < MATRIX_HEADER_SIZE || header.getInt(0) != MATRIX_MAGIC) {
+            throw new IOException("Некорректный заголовок " + MATRIX_ENTRY_NAME);
+        }
+        int size = header.getInt(8);
+        if (size <= 0) {
+            throw new IOException("Матрица городов пуста или некорректна");
+        }
+        return size;
+    }
+
     private static ZipEntry findFirstJsonEntry(ZipFile zipFile) {
         Enumeration<? extends ZipEntry> entries = zipFile.entries();
         while (entries.hasMoreElements()) {
@@ -59,8 +88,15 @@ public class ResultSaver {
 
 
 
+    // Лучший маршрут держим в памяти, на диск он попадает только в @Checkpoint.
+    // Дистрибьютор создаёт один экземпляр и вызывает @Process и @Checkpoint из одного потока
+    private JsonNode best;
+    private long bestCost;
+    private boolean dirty;
+    private boolean loaded;
+
     @Process
-    public static void saveIfBetter(String currentResultJson) throws IOException {
+    public void saveIfBetter(String currentResultJson) throws IOException {
         // 1. Проверка входных данных
         if (currentResultJson == null || currentResultJson.isEmpty()) {
             throw new IllegalArgumentException("Result JSON string cannot be null or empty");
@@ -74,54 +110,91 @@ public class ResultSaver {
             throw new IllegalArgumentException("Invalid JSON format", e);
         }
 
-        // 3. Проверка обязательных полей
+        // 3. Воркер отсёк всю задачу границей: маршрута дешевле уже известного в ней нет
+        if (currentResult.path("pruned").asBoolean()) {
+            return;
+        }
+
+        // 4. Проверка обязательных полей
         if (!currentResult.has("totalCost") || !currentResult.has("route")) {
             throw new IllegalArgumentException("Result must contain 'totalCost' and 'route' fields");
         }
 
-        int currentCost = currentResult.get("totalCost").asInt();
-
-        // 4. Обработка случая, когда файла не существует
-        if (!Files.exists(RESULT_FILE)) {
-            saveResult(currentResultJson);
-            System.out.println("Файл не существовал, сохранен новый результат");
-            return;
+        // 5. При первом результате подхватываем то, что уже сохранено на диске
+        if (!loaded) {
+            best = loadSaved();
+            bestCost = best == null ? 0 : best.get("totalCost").asLong();
+            loaded = true;
         }
 
-        // 5. Чтение существующего результата
-        try {
-            String existingJson = Files.readString(RESULT_FILE);
-            JsonNode existingResult = objectMapper.readTree(existingJson);
+        // 6. Сравнение с накопленным результатом
+        JsonNode combined = combine(best, currentResult);
+        if (combined != best) {
+            best = combined;
+            bestCost = combined.get("totalCost").asLong();
+            dirty = true;
+            System.out.println("Найден более оптимальный маршрут, стоимость " + bestCost);
+        }
+    }
 
-            if (!existingResult.has("totalCost")) {
-                System.out.println("Существующий файл поврежден, будет перезаписан");
-                saveResult(currentResultJson);
-                return;
-            }
+    // Из двух результатов остаётся более дешёвый маршрут; при равной стоимости - уже накопленный
+    static JsonNode combine(JsonNode accumulated, JsonNode current) {
+        if (accumulated == null) return current;
+        return current.get("totalCost").asLong() < accumulated.get("totalCost").asLong() ? current : accumulated;
+    }
 
-            int existingCost = existingResult.get("totalCost").asInt();
+    @Checkpoint
+    public void checkpoint(String reason) throws IOException {
+        if (!dirty) return;
+        saveResult(objectMapper.writeValueAsString(best));
+        dirty = false;
+        System.out.println("Лучший маршрут сохранен (" + reason + "), стоимость " + bestCost);
+    }
 
-            // 6. Сравнение и сохранение
-            if (currentCost < existingCost) {
-                saveResult(currentResultJson);
-                System.out.println("Найден более оптимальный маршрут! Файл обновлен.");
-            } else {
-                System.out.println("Текущий результат не лучше существующего.");
+    private static JsonNode loadSaved() {
+        if (!Files.exists(RESULT_FILE)) return null;
+        try {
+            JsonNode existingResult = objectMapper.readTree(Files.readString(RESULT_FILE));
+            if (existingResult == null || !existingResult.has("totalCost")) {
+                System.out.println("Существующий файл поврежден, будет перезаписан");
+                return null;
             }
+            return existingResult;
         } catch (IOException e) {
             System.err.println("Ошибка чтения файла результатов: " + e.getMessage());
-            System.out.println("Создаем новый файл результатов");
-            saveResult(currentResultJson);
+            return null;
         }
     }
 
+    // Пишем во временный файл и переносим, чтобы при падении на диске не остался обрывок JSON.
+    // После возврата дистрибьютор пишет в журнал, что диапазоны выполнены, поэтому и файл, и
+    // перенос должны пережить отключение питания: fsync файла до переноса и каталога после
     private static void saveResult(String json) throws IOException {
+        Path tempFile = RESULT_FILE.resolveSibling(RESULT_FILE.getFileName() + ".tmp");
         try {
-            Files.writeString(RESULT_FILE, json, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            try (FileChannel channel = FileChannel.open(tempFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer data = ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                channel.force(true);
+            }
+            Files.move(tempFile, RESULT_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(RESULT_FILE.toAbsolutePath().getParent());
         } catch (IOException e) {
             System.err.println("Ошибка сохранения результата: " + e.getMessage());
             throw e;
         }
     }
 
-}
\ No newline at end of file
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Не все системы дают открыть каталог (Windows), там перенос держится на самой ФС
+            System.err.println("Не удалось сбросить каталог " + directory + " на диск: " + e.getMessage());
+        }
+    }
+
+}
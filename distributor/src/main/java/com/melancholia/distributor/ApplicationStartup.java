@@ -3,7 +3,10 @@ package com.melancholia.distributor;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.melancholia.distributor.distributor.DistributorJarService;
+import com.melancholia.distributor.distributor.DistributorService;
+import com.melancholia.distributor.distributor.JobJournal;
 import com.melancholia.distributor.distributor.TaskManager;
+import com.melancholia.distributor.utils.PluginMethod;
 import com.melancholia.distributor.utils.ReflectionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,6 +16,7 @@ import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
 import java.nio.file.Paths;
+import java.util.List;
 
 
 @Component
@@ -23,6 +27,10 @@ public class ApplicationStartup
     private TaskManager taskManager;
     @Autowired
     private DistributorJarService distributorJarService;
+    @Autowired
+    private DistributorService distributorService;
+    @Autowired
+    private JobJournal jobJournal;
     @Value("${distributor-init-files.jar-file-path}")
     private String JAR_FILE_PATH;
     @Value("${distributor-init-files.manifest-path}")
@@ -36,20 +44,46 @@ public class ApplicationStartup
         try {
             JsonNode manifestJson = mapper.readTree(Paths.get(MANIFEST_PATH).toFile());
 
-            Method calculateEndMethod =
-                    ReflectionUtils.getAnnotatedMethodsByName(
-                            Paths.get(JAR_FILE_PATH), manifestJson.get("className").asText(), manifestJson.get("annotationEndName").asText())
-                            .get(0);
+            // Класс плагина загружается один раз, все его методы работают с одним экземпляром,
+            // в котором @Process копит результат между вызовами
+            Class<?> pluginClass = ReflectionUtils.loadClass(Paths.get(JAR_FILE_PATH), manifestJson.get("className").asText());
+            Object plugin = PluginMethod.newInstance(pluginClass);
+
+            PluginMethod calculateEndMethod = PluginMethod.of(
+                    ReflectionUtils.getAnnotatedMethods(pluginClass, manifestJson.get("annotationEndName").asText()).get(0),
+                    plugin);
             taskManager.setFinalEnd(
                     distributorJarService.executeCalculateEnd(
                             calculateEndMethod,
                             mapper.writeValueAsString(manifestJson.get("data"))).toString()
             );
 
-            distributorJarService.setProcessResult(
-                    ReflectionUtils.getAnnotatedMethodsByName(
-                                    Paths.get(JAR_FILE_PATH), manifestJson.get("className").asText(), manifestJson.get("annotationProcessName").asText())
-                            .get(0));
+            distributorJarService.setProcessResult(PluginMethod.of(
+                    ReflectionUtils.getAnnotatedMethods(pluginClass, manifestJson.get("annotationProcessName").asText()).get(0),
+                    plugin));
+
+            // @Checkpoint необязателен: плагины без него сохраняют результат сами в @Process
+            if (manifestJson.hasNonNull("annotationCheckpointName")) {
+                List<Method> checkpointMethods =
+                        ReflectionUtils.getAnnotatedMethods(pluginClass, manifestJson.get("annotationCheckpointName").asText());
+                if (!checkpointMethods.isEmpty()) {
+                    distributorJarService.setCheckpoint(PluginMethod.of(checkpointMethods.get(0), plugin));
+                }
+            }
+
+            JobJournal.RecoveredJob recovered = jobJournal.recoveredJob();
+            if (recovered != null) {
+                taskManager.setFinalEnd(recovered.finalEnd().toString());
+                taskManager.restore(recovered.cursor(), recovered.open());
+                // Упали после сохранения последних результатов, но до записи об остановке
+                if (taskManager.isFinished()) {
+                    System.out.println("Задача " + recovered.zipName() + " уже выполнена, завершаем её");
+                    distributorService.stopGlobalTask();
+                } else {
+                    distributorService.resumeTask(recovered.zipName());
+                    System.out.println("Продолжаем задачу " + recovered.zipName() + " после перезапуска");
+                }
+            }
 
             System.out.println("Инициализация прошла успешно");
 
@@ -12,7 +12,7 @@ public class DistributorConfig {
 
     @Bean
     public String callbackAddress(@Value("${server.port}") int port) throws UnknownHostException {
-        return String.format("http://%s:%d/result", InetAddress.getLocalHost().getHostAddress(), port);
+        return String.format("http://%s:%d/results", InetAddress.getLocalHost().getHostAddress(), port);
     }
 
 
@@ -0,0 +1,128 @@
+package com.melancholia.distributor.distributor;
+
+import com.melancholia.distributor.dto.Bundle;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+@Service
+public class BundleService {
+
+    @Value("${worker-init-files.jar-file-path}")
+    private String JAR_FILE_PATH;
+    @Value("${worker-init-files.manifest-path}")
+    private String MANIFEST_PATH;
+    @Value("${upload-path}")
+    private String UPLOAD_PATH;
+    @Value("${bundle.peer-sources}")
+    private int peerSources;
+    @Value("${bundle.max-direct-uploads}")
+    private int maxDirectUploads;
+
+    // Хеш пересчитывается, только если у файла поменялся размер или время изменения
+    private final Map<Path, FileDigest> digests = new ConcurrentHashMap<>();
+    private final Map<String, Path> blobs = new ConcurrentHashMap<>();
+    // Какие воркеры уже держат файл и могут раздавать его остальным
+    private final Map<String, Set<String>> holders = new ConcurrentHashMap<>();
+    private Semaphore directUploads;
+
+    @PostConstruct
+    private void init() {
+        directUploads = new Semaphore(maxDirectUploads, true);
+    }
+
+    public Bundle bundleFor(String zipName) {
+        return new Bundle(
+                digest(Paths.get(JAR_FILE_PATH)),
+                digest(Paths.get(MANIFEST_PATH)),
+                digest(Paths.get(UPLOAD_PATH, zipName)));
+    }
+
+    public Path blobPath(String hash) {
+        return blobs.get(hash);
+    }
+
+    public List<String> peersFor(String hash, String exceptWorker) {
+        Set<String> workers = holders.get(hash);
+        if (workers == null) return List.of();
+
+        List<String> peers = new ArrayList<>(workers);
+        peers.remove(exceptWorker);
+        Collections.shuffle(peers);
+        return peers.subList(0, Math.min(peerSources, peers.size()));
+    }
+
+    public void addHolder(String hash, String worker) {
+        holders.computeIfAbsent(hash, key -> ConcurrentHashMap.newKeySet()).add(worker);
+    }
+
+    public void retainHolders(Set<String> workers) {
+        holders.values().forEach(hashHolders -> hashHolders.retainAll(workers));
+    }
+
+    // Напрямую с дистрибьютора одновременно раздаётся ограниченное число файлов,
+    // остальные воркеры дожидаются, пока у соседей появится копия
+    public void acquireDirectUpload() throws InterruptedException {
+        directUploads.acquire();
+    }
+
+    public void releaseDirectUpload() {
+        directUploads.release();
+    }
+
+    private String digest(Path path) {
+        try {
+            Path file = path.toAbsolutePath();
+            long size = Files.size(file);
+            long modified = Files.getLastModifiedTime(file).toMillis();
+
+            FileDigest cached = digests.get(file);
+            if (cached != null && cached.size == size && cached.modified == modified) return cached.hash;
+
+            String hash = sha256(file);
+            digests.put(file, new FileDigest(size, modified, hash));
+            blobs.put(hash, file);
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось посчитать хеш файла " + path, e);
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (InputStream is = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private record FileDigest(long size, long modified, String hash) {}
+
+}
@@ -5,17 +5,25 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.melancholia.distributor.core.ApiBody;
+import com.melancholia.distributor.core.config.HttpClientConfig;
 import com.melancholia.distributor.dto.Task;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @RestController
 public class DistributorController {
@@ -23,12 +31,21 @@ public class DistributorController {
     @Autowired
     private DistributorService distributorService;
     @Autowired
-    private DistributorJarService distributorJarService;
+    private ResultReducer resultReducer;
     @Autowired
     private TaskManager taskManager;
+    @Autowired
+    private PoolingHttpClientConnectionManager connectionManager;
+    @Autowired
+    private WorkerDirectory workerDirectory;
     @Value("${upload-path}")
     private String UPLOAD_PATH;
+    @Value("${reducer.retry-after-seconds}")
+    private int retryAfterSeconds;
     private static final ObjectMapper mapper = new ObjectMapper();
+    // Пачки, которые уже учитывают задачи, но ещё не отдали результаты в свёртку. Завершение
+    // ставит в очередь последняя из них, чтобы оно не обогнало чужие результаты
+    private final AtomicInteger reducing = new AtomicInteger();
 
     @GetMapping("/start")
     public ResponseEntity<ApiBody> startTask(@RequestParam("zipName") String zipName) {
@@ -45,6 +62,15 @@ public class DistributorController {
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    @GetMapping("/http-pool")
+    public ResponseEntity<ApiBody> httpPoolStats() {
+        Map<String, Object> stats = HttpClientConfig.poolStats(connectionManager);
+        // Поток SSE от менеджера идёт мимо пула, см. WorkerDirectory
+        stats.put("managerStream", workerDirectory.streamStats());
+        ApiBody response = new ApiBody("Статистика пула HTTP-соединений", HttpStatus.OK.value(), stats);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
     public boolean isZipFileValid(String zipName) {
         try {
             if (zipName == null || zipName.isEmpty()) {
@@ -62,22 +88,126 @@ public class DistributorController {
     }
 
     @PostMapping("/result")
-    public ResponseEntity<ApiBody> receiveResult(@RequestBody ObjectNode result) throws JsonProcessingException {
+    public ResponseEntity<ApiBody> receiveResult(@RequestBody ObjectNode result) {
         if (distributorService.getZipName() == null) {
             ApiBody response = new ApiBody("Задачи нет", HttpStatus.OK.value(), null);
             return new ResponseEntity<>(response, HttpStatus.OK);
         }
-        System.out.println(result);
-        JsonNode resultNode = result.path("result");
 
-        Task task = mapper.treeToValue(result.path("task"), Task.class);
+        if (!resultReducer.tryReserve(1)) return backpressure();
+        int accepted;
+        try {
+            accepted = reduceResults(List.of(result));
+        } catch (IllegalArgumentException e) {
+            return malformed(e);
+        }
+
+        String message = accepted > 0 ? "Результат получен" : "Результат уже учтён";
+        ApiBody response = new ApiBody(message, HttpStatus.OK.value(), null);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    // Пачка результатов от воркера: учитываем все задачи, затем один раз выдаём новые
+    @PostMapping("/results")
+    public ResponseEntity<ApiBody> receiveResults(@RequestBody ObjectNode batch) {
+        if (distributorService.getZipName() == null) {
+            ApiBody response = new ApiBody("Задачи нет", HttpStatus.OK.value(), null);
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        }
+
+        List<JsonNode> results = new ArrayList<>();
+        batch.path("results").forEach(results::add);
+        if (!resultReducer.tryReserve(results.size())) return backpressure();
+        int accepted;
+        try {
+            accepted = reduceResults(results);
+        } catch (IllegalArgumentException e) {
+            return malformed(e);
+        }
+
+        ApiBody response = new ApiBody("Результатов получено: " + accepted + " из " + results.size(),
+                HttpStatus.OK.value(), null);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
 
-        taskManager.removeCompetedTask(task);
-        distributorJarService.executeProcessResult(resultNode.toString());
-        if (taskManager.getFinalEnd().equals(new BigInteger(task.getEnd()))) distributorService.stopGlobalTask();
+    @GetMapping("/progress")
+    public ResponseEntity<ApiBody> progress() {
+        ApiBody response = new ApiBody("Ход задачи", HttpStatus.OK.value(), taskManager.progress());
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
 
-        ApiBody response = new ApiBody("Результат получен", HttpStatus.OK.value(), null);
+    @GetMapping("/reducer-stats")
+    public ResponseEntity<ApiBody> reducerStats() {
+        ApiBody response = new ApiBody("Состояние очереди свёртки", HttpStatus.OK.value(), resultReducer.stats());
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    // Место в очереди под результаты уже зарезервировано, свёртка идёт в ResultReducer,
+    // здесь только учёт задач и выдача новых. Пачка сначала разбирается целиком: если хоть одна
+    // задача некорректна, не учитывается ни одна. Учтённые результаты уходят в свёртку в любом случае
+    private int reduceResults(List<JsonNode> results) {
+        List<Task> tasks = new ArrayList<>(results.size());
+        try {
+            for (JsonNode result : results) {
+                Task task;
+                try {
+                    task = mapper.treeToValue(result.path("task"), Task.class);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException("Некорректная задача в результате: " + e.getOriginalMessage(), e);
+                }
+                if (task == null || result.path("task").path("start").isMissingNode()
+                        || result.path("task").path("end").isMissingNode()) {
+                    throw new IllegalArgumentException("В результате нет задачи: " + result);
+                }
+                tasks.add(task);
+            }
+        } catch (RuntimeException e) {
+            resultReducer.release(results.size());
+            throw e;
+        }
+
+        List<ResultReducer.Accepted> accepted = new ArrayList<>(results.size());
+        Set<String> workers = new LinkedHashSet<>();
+        boolean finished;
+        reducing.incrementAndGet();
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                JsonNode result = results.get(i);
+                Task task = tasks.get(i);
+                if (task.getWorker() != null) workers.add(task.getWorker());
+
+                if (taskManager.completeTask(task, result.path("solveTimeMs").asLong(-1))) {
+                    accepted.add(new ResultReducer.Accepted(task, result.path("result")));
+                    // Стоимость найденного решения становится верхней границей для следующих задач
+                    JsonNode cost = result.path("result").path("totalCost");
+                    if (cost.isNumber()) taskManager.offerBound(cost.asLong());
+                    taskManager.takeDuplicates(task).forEach(distributorService::cancelDuplicate);
+                }
+            }
+        } finally {
+            resultReducer.release(results.size() - accepted.size());
+            resultReducer.submit(accepted, false);
+            finished = reducing.decrementAndGet() == 0 && taskManager.claimFinish();
+            if (finished) resultReducer.submit(List.of(), true);
+        }
+        System.out.println("Принято результатов: " + accepted.size() + " из " + results.size());
+
+        if (!finished && !taskManager.isFinished()) workers.forEach(distributorService::dispatchNext);
+        return accepted.size();
+    }
+
+    private ResponseEntity<ApiBody> malformed(IllegalArgumentException e) {
+        System.out.println("Пачка результатов отклонена: " + e.getMessage());
+        ApiBody response = new ApiBody("Некорректные результаты", HttpStatus.BAD_REQUEST.value(), null);
+        return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    }
+
+    private ResponseEntity<ApiBody> backpressure() {
+        ApiBody response = new ApiBody("Очередь свёртки заполнена, повторите позже",
+                HttpStatus.SERVICE_UNAVAILABLE.value(), resultReducer.stats());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(response);
+    }
+
 }
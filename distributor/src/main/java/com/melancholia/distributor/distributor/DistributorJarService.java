@@ -1,28 +1,32 @@
 package com.melancholia.distributor.distributor;
 
-import com.melancholia.distributor.utils.ReflectionUtils;
+import com.melancholia.distributor.utils.PluginMethod;
 import org.springframework.stereotype.Service;
 
-import java.lang.reflect.Method;
-import java.nio.file.Path;
-
 @Service
 public class DistributorJarService {
 
-    private Method processResult;
+    private PluginMethod processResult;
+    private PluginMethod checkpoint;
 
-    public void setProcessResult(Method method) {
+    public void setProcessResult(PluginMethod method) {
         this.processResult = method;
     }
 
-    public Object executeCalculateEnd(Method method, String dataJson) {
-        Object[] calculateArgs = {dataJson};
-        return ReflectionUtils.executeMethod(method, calculateArgs);
+    public void setCheckpoint(PluginMethod method) {
+        this.checkpoint = method;
+    }
+
+    public Object executeCalculateEnd(PluginMethod method, String dataJson) {
+        return method.invoke(dataJson);
     }
 
     public Object executeProcessResult(String jsonResult) {
-        Object[] processArgs = {jsonResult};
-        return ReflectionUtils.executeMethod(processResult, processArgs);
+        return processResult.invoke(jsonResult);
+    }
+
+    public void executeCheckpoint(String reason) {
+        if (checkpoint != null) checkpoint.invoke(reason);
     }
 
 }
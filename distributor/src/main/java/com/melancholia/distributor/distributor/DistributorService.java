@@ -1,22 +1,28 @@
 package com.melancholia.distributor.distributor;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.melancholia.distributor.core.ApiBody;
+import com.melancholia.distributor.dto.BlobFetch;
+import com.melancholia.distributor.dto.Bundle;
+import com.melancholia.distributor.dto.MembershipEvent;
 import com.melancholia.distributor.dto.Task;
 import com.melancholia.distributor.dto.Worker;
+import com.melancholia.distributor.enums.MembershipEventType;
 import com.melancholia.distributor.enums.WorkerStatusEnum;
 import com.melancholia.distributor.utils.HttpSenderService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClientException;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -27,96 +33,153 @@ public class DistributorService {
     private HttpSenderService httpSenderService;
     @Autowired
     private TaskManager taskManager;
-    @Value("${worker-init-files.jar-file-path}")
-    private String JAR_FILE_PATH;
-    @Value("${worker-init-files.manifest-path}")
-    private String MANIFEST_PATH;
-    @Value("${manager.get-workers-endpoint}")
-    private String MANAGER_GET_WORKERS_ENDPOINT;
-    @Value("${upload-path}")
-    private String UPLOAD_PATH;
-    private String zipName = null;
+    @Autowired
+    private BundleService bundleService;
+    @Autowired
+    private WorkerDirectory workerDirectory;
+    @Autowired
+    private JobJournal jobJournal;
+    private volatile String zipName = null;
+    private final Set<String> initializing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService dispatchExecutor = Executors.newCachedThreadPool();
 
+    // Основная раздача идёт по приходу результата (dispatchNext) и по событиям состава
+    // воркеров, периодический обход по локальному зеркалу - страховка от потерянных событий
     private static final long PROCESS_INTERVAL_MS = 10_000;
-    private static final ObjectMapper mapper = new ObjectMapper();
 
     public String getZipName() {
         return zipName;
     }
 
     public void startTask(String zipName) {
+        jobJournal.start(zipName, taskManager.getFinalEnd());
+        this.zipName = zipName;
+    }
+
+    // Продолжение задачи, восстановленной из журнала: заново в журнал её не пишем
+    public void resumeTask(String zipName) {
         this.zipName = zipName;
     }
 
     @Scheduled(fixedRate = PROCESS_INTERVAL_MS)
     public void processTask() {
+        workerDirectory.refresh();
         if (zipName == null) return;
 
         try {
             System.out.println("Запуск обработки задач...");
 
-            ApiBody workersResponse = httpSenderService.sendGetRequest(MANAGER_GET_WORKERS_ENDPOINT, ApiBody.class);
-            List<Worker> workers = parseWorkers(workersResponse.getData());
-
-            System.out.println("Получено воркеров: " + workers.size());
+            List<Worker> workers = workerDirectory.getWorkers();
+            System.out.println("Известно воркеров: " + workers.size());
 
-            ExecutorService executorService = Executors.newCachedThreadPool();
-
-            for (Worker worker : workers) {
-                executorService.execute(() -> {
-                    try {
-                        if (worker.getWorkerStatus().equals(WorkerStatusEnum.UNINITIALIZED)) {
-                            System.out.println("Инициализация воркера: " + worker.fullAddress());
-                            initWorker(worker, zipName);
-                        } else if (worker.getWorkerStatus().equals(WorkerStatusEnum.FREE)) {
-                            System.out.println("Отправка задачи воркеру: " + worker.fullAddress());
-                            sendTask(worker);
-                        }
-                    } catch (Exception e) {
-                        System.out.println("Проблема с воркером " + worker.fullAddress() + ": " + e.getMessage());
-                    }
-                });
-            }
+            workers.forEach(this::serveWorker);
 
             // Не ждём завершения задач, сразу запускаем перераспределение
             taskManager.taskRedistribution(workers);
             System.out.println("Завершена постановка задач в очередь");
 
-            // Плавно завершаем ExecutorService (не блокируя текущий поток)
-            executorService.shutdown();
-
         } catch (Exception e) {
             System.out.println("Ошибка в процессе обработки: " + e.getMessage());
         }
     }
 
-    private List<Worker> parseWorkers(Object data) {
-        try {
-            if (data == null) {
-                return Collections.emptyList();
+    @EventListener
+    public void onMembershipEvent(MembershipEvent event) {
+        if (event.getType() == MembershipEventType.SNAPSHOT
+                || event.getType() == MembershipEventType.LEFT
+                || !event.getRemoved().isEmpty()) {
+            List<Worker> workers = workerDirectory.getWorkers();
+            bundleService.retainHolders(workerDirectory.addresses());
+            taskManager.taskRedistribution(workers);
+        }
+        if (zipName == null || event.getType() == MembershipEventType.LEFT) return;
+
+        event.getWorkers().forEach(this::serveWorker);
+    }
+
+    private void serveWorker(Worker worker) {
+        dispatchExecutor.execute(() -> {
+            try {
+                if (worker.getWorkerStatus() == WorkerStatusEnum.UNINITIALIZED) {
+                    // Событие и плановый обход могут прийти одновременно - инициализируем один раз
+                    if (!initializing.add(worker.fullAddress())) return;
+                    try {
+                        System.out.println("Инициализация воркера: " + worker.fullAddress());
+                        initWorker(worker, zipName);
+                    } finally {
+                        initializing.remove(worker.fullAddress());
+                    }
+                } else {
+                    topUpWorker(worker);
+                }
+            } catch (Exception e) {
+                System.out.println("Проблема с воркером " + worker.fullAddress() + ": " + e.getMessage());
             }
-            String jsonString = mapper.writeValueAsString(data);
-            return mapper.readValue(jsonString, new TypeReference<List<Worker>>() {});
-        } catch (Exception e) {
-            System.out.println("Не удалось разобрать список воркеров: " + e.getMessage());
-            return Collections.emptyList();
+        });
+    }
+
+    public void dispatchNext(String workerAddress) {
+        if (zipName == null || workerAddress == null) return;
+
+        Worker worker = workerDirectory.get(workerAddress);
+        if (worker == null) {
+            System.out.println("Воркер " + workerAddress + " ещё не известен, задачу выдаст плановый обход");
+            return;
+        }
+
+        dispatchExecutor.execute(() -> {
+            try {
+                topUpWorker(worker);
+            } catch (Exception e) {
+                System.out.println("Проблема с воркером " + worker.fullAddress() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // Проигравший дубликат отменяем на воркере и сразу даём ему новую работу
+    public void cancelDuplicate(Task duplicate) {
+        Worker worker = workerDirectory.get(duplicate.getWorker());
+        if (worker == null) return;
+
+        dispatchExecutor.execute(() -> {
+            try {
+                httpSenderService.sendPostRequest(worker.cancelAddress(), duplicate, ApiBody.class);
+                System.out.println("Дубликат задачи " + duplicate.getStart() + ":" + duplicate.getEnd()
+                        + " отменён на воркере " + worker.fullAddress());
+                if (zipName != null) topUpWorker(worker);
+            } catch (Exception e) {
+                System.out.println("Не удалось отменить задачу на воркере " + worker.fullAddress() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // Держим у воркера столько задач, сколько он готов принять в очередь предвыборки
+    private void topUpWorker(Worker worker) {
+        int prefetchDepth = Math.max(1, worker.getPrefetchDepth());
+        while (sendTask(worker, prefetchDepth)) {
+            System.out.println("Воркеру " + worker.fullAddress() + " выдано задач: "
+                    + taskManager.leaseCount(worker.fullAddress()) + "/" + prefetchDepth);
         }
     }
 
+    // Воркер хранит файлы по SHA-256 и отвечает, каких у него нет, - передаём только их
     private void initWorker(Worker worker, String zipName) {
         try {
-            MultiValueMap<String, Object> multipartBody = new LinkedMultiValueMap<>();
-            multipartBody.add("jarFile", new FileSystemResource(JAR_FILE_PATH));
-            multipartBody.add("jsonData", new FileSystemResource(MANIFEST_PATH));
-            multipartBody.add("archiveFile", new FileSystemResource(UPLOAD_PATH + "/" + zipName));
-
-            ApiBody response = httpSenderService.sendMultipartPostRequest(
-                    worker.initAddress(),
-                    multipartBody,
-                    ApiBody.class
-            );
+            Bundle bundle = bundleService.bundleFor(zipName);
 
-            System.out.println("Воркер " + worker.fullAddress() + " успешно инициализирован: " + response.getMessage());
+            List<String> missing = requestInit(worker, bundle);
+            if (!missing.isEmpty()) {
+                for (String hash : missing) {
+                    uploadBlob(worker, hash);
+                }
+                missing = requestInit(worker, bundle);
+            }
+            if (!missing.isEmpty()) {
+                throw new IllegalStateException("Воркеру по-прежнему не хватает файлов " + missing);
+            }
+            bundle.hashes().forEach(hash -> bundleService.addHolder(hash, worker.fullAddress()));
+
+            System.out.println("Воркер " + worker.fullAddress() + " успешно инициализирован");
 
         } catch (Exception e) {
             System.out.println("Ошибка инициализации воркера " + worker.fullAddress() + ": " + e.getMessage());
@@ -124,15 +187,58 @@ public class DistributorService {
         }
     }
 
-    private void sendTask(Worker worker) {
+    private List<String> requestInit(Worker worker, Bundle bundle) {
+        ApiBody response = httpSenderService.sendPostRequest(worker.initAddress(), bundle, ApiBody.class);
+        if (!(response.getData() instanceof List<?> missing)) return Collections.emptyList();
+        return missing.stream().map(Object::toString).toList();
+    }
+
+    private void uploadBlob(Worker worker, String hash) throws Exception {
+        Path blobPath = bundleService.blobPath(hash);
+        if (blobPath == null) {
+            throw new IllegalStateException("Неизвестный файл " + hash);
+        }
+
+        if (fetchFromPeers(worker, hash, blobPath)) return;
+
+        bundleService.acquireDirectUpload();
+        try {
+            // Пока ждали очереди, файл мог появиться у соседей
+            if (fetchFromPeers(worker, hash, blobPath)) return;
+
+            System.out.println("Отправка файла " + blobPath.getFileName() + " воркеру " + worker.fullAddress());
+            httpSenderService.sendStreamingPutRequest(worker.blobAddress(hash), new FileSystemResource(blobPath), ApiBody.class);
+            bundleService.addHolder(hash, worker.fullAddress());
+        } finally {
+            bundleService.releaseDirectUpload();
+        }
+    }
+
+    private boolean fetchFromPeers(Worker worker, String hash, Path blobPath) throws IOException {
+        List<String> peers = bundleService.peersFor(hash, worker.fullAddress());
+        if (peers.isEmpty()) return false;
+
         try {
-            Task task = taskManager.getTask();
-            if (task == null) {
-                System.out.println("Нет задач для отправки воркеру " + worker.fullAddress());
-                return;
-            }
+            System.out.println("Воркер " + worker.fullAddress() + " получает файл " + blobPath.getFileName() + " от соседей " + peers);
+            httpSenderService.sendBlobPostRequest(
+                    worker.blobFetchAddress(hash),
+                    new BlobFetch(Files.size(blobPath), peers),
+                    ApiBody.class);
+            bundleService.addHolder(hash, worker.fullAddress());
+            return true;
+        } catch (RestClientException e) {
+            System.out.println("Не удалось получить файл от соседей, отправляем напрямую: " + e.getMessage());
+            return false;
+        }
+    }
 
-            task.setWorker(worker.fullAddress());
+    private boolean sendTask(Worker worker, int prefetchDepth) {
+        Task task = taskManager.getTask(worker.fullAddress(), prefetchDepth);
+        if (task == null) {
+            return false;
+        }
+
+        try {
             ApiBody response = httpSenderService.sendPostRequest(
                     worker.solveAddress(),
                     task,
@@ -140,9 +246,11 @@ public class DistributorService {
             );
 
             System.out.println("Задача успешно отправлена воркеру " + worker.fullAddress() + ": " + response.getMessage());
+            return true;
 
         } catch (Exception e) {
             System.out.println("Не удалось отправить задачу воркеру " + worker.fullAddress() + ": " + e.getMessage());
+            taskManager.releaseTask(task);
             throw new RuntimeException("Ошибка отправки задачи", e);
         }
     }
@@ -151,10 +259,7 @@ public class DistributorService {
         try {
             System.out.println("Начало сброса всех воркеров...");
 
-            ApiBody workersResponse = httpSenderService.sendGetRequest(MANAGER_GET_WORKERS_ENDPOINT, ApiBody.class);
-            List<Worker> workers = parseWorkers(workersResponse.getData());
-
-            for (Worker worker : workers) {
+            for (Worker worker : workerDirectory.getWorkers()) {
                 try {
                     httpSenderService.sendGetRequest(worker.resetAddress(), Void.class);
                     System.out.println("Воркер " + worker.fullAddress() + " успешно сброшен");
@@ -174,6 +279,7 @@ public class DistributorService {
     public void stopGlobalTask() {
         try {
             zipName = null;
+            jobJournal.stop();
             taskManager.reset();
             resetAllWorkers();
 
@@ -0,0 +1,350 @@
+package com.melancholia.distributor.distributor;
+
+import com.melancholia.distributor.dto.Task;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал хода задачи: старт, выдача нового диапазона, выполнение диапазона, остановка.
+ * Записи копятся в памяти и раз в flush-interval-ms пишутся на диск одним fsync. Потеря
+ * последних записей при падении безопасна: невыполненный диапазон просто посчитается ещё раз.
+ * <p>
+ * Журнал сам ведёт состояние, которое из него следует (курсор и незавершённые диапазоны),
+ * поэтому снимок для сжатия строится из него же и всегда согласован с записями. После
+ * compact-after-records записей состояние пишется в снимок, а журнал обнуляется. Снимок и
+ * журнал помечены номером поколения: журнал, оставшийся от прошлого поколения (падение между
+ * записью снимка и обнулением журнала), при чтении пропускается.
+ */
+@Component
+public class JobJournal {
+
+    @Value("${journal.path}")
+    private String journalPath;
+    @Value("${journal.flush-interval-ms}")
+    private long flushIntervalMs;
+    @Value("${journal.compact-after-records}")
+    private int compactAfterRecords;
+
+    private static final String JOURNAL_FILE = "journal.log";
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private static final byte START = 1;
+    private static final byte LEASE = 2;
+    private static final byte DONE = 3;
+    private static final byte STOP = 4;
+    private static final byte CURSOR = 5;
+    private static final byte GENERATION = 6;
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+
+    public record Range(BigInteger start, BigInteger end) {}
+
+    public record RecoveredJob(String zipName, BigInteger finalEnd, BigInteger cursor, List<Range> open) {}
+
+    private record Entry(byte type, String zipName, BigInteger first, BigInteger second) {}
+
+    // Состояние, восстановимое из журнала, защищено блокировкой this
+    private String zipName;
+    private BigInteger finalEnd;
+    private BigInteger cursor = BigInteger.ZERO;
+    private final Set<Range> open = new LinkedHashSet<>();
+    private long generation;
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private int records;
+    private byte[] pendingSnapshot;
+
+    private FileChannel channel;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path directory = Paths.get(journalPath);
+        Files.createDirectories(directory);
+
+        long started = System.nanoTime();
+        replay(directory.resolve(SNAPSHOT_FILE), false);
+        long validLength = replay(directory.resolve(JOURNAL_FILE), true);
+
+        channel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Хвост, оборванный при падении, отрезаем, дальше пишем после последней целой записи
+        channel.truncate(validLength);
+        channel.position(validLength);
+        if (validLength == 0) {
+            appendHeader();
+        }
+
+        if (zipName != null) {
+            System.out.println("Журнал прочитан за " + (System.nanoTime() - started) / 1_000_000 + " мс: задача " + zipName
+                    + ", курсор " + cursor + ", незавершённых диапазонов " + open.size());
+        }
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized RecoveredJob recoveredJob() {
+        if (zipName == null) return null;
+        return new RecoveredJob(zipName, finalEnd, cursor, List.copyOf(open));
+    }
+
+    public void start(String zipName, BigInteger finalEnd) {
+        append(new Entry(START, zipName, finalEnd, null));
+    }
+
+    public void lease(Task task) {
+        append(new Entry(LEASE, null, task.startValue(), task.endValue()));
+    }
+
+    public void done(Task task) {
+        append(new Entry(DONE, null, task.startValue(), task.endValue()));
+    }
+
+    public void stop() {
+        append(new Entry(STOP, null, null, null));
+    }
+
+    private synchronized void append(Entry entry) {
+        apply(entry);
+        try {
+            writeFrame(new DataOutputStream(buffer), entry);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось записать в журнал", e);
+        }
+        if (++records >= compactAfterRecords && pendingSnapshot == null) {
+            // Снимок уже включает всё, что лежит в буфере, поэтому буфер не нужен
+            generation++;
+            pendingSnapshot = snapshot();
+            buffer = new ByteArrayOutputStream();
+            records = 0;
+            appendHeader();
+        }
+    }
+
+    private void appendHeader() {
+        try {
+            writeFrame(new DataOutputStream(buffer), new Entry(GENERATION, null, BigInteger.valueOf(generation), null));
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось записать в журнал", e);
+        }
+    }
+
+    private void apply(Entry entry) {
+        switch (entry.type()) {
+            case START -> {
+                zipName = entry.zipName();
+                finalEnd = entry.first();
+                cursor = BigInteger.ZERO;
+                open.clear();
+            }
+            case LEASE -> {
+                open.add(new Range(entry.first(), entry.second()));
+                cursor = cursor.max(entry.second());
+            }
+            case DONE -> open.remove(new Range(entry.first(), entry.second()));
+            case CURSOR -> cursor = entry.first();
+            case GENERATION -> generation = entry.first().longValue();
+            case STOP -> {
+                zipName = null;
+                finalEnd = null;
+                cursor = BigInteger.ZERO;
+                open.clear();
+            }
+            default -> throw new IllegalStateException("Неизвестная запись журнала " + entry.type());
+        }
+    }
+
+    private byte[] snapshot() {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(snapshot);
+        try {
+            writeFrame(out, new Entry(GENERATION, null, BigInteger.valueOf(generation), null));
+            if (zipName != null) {
+                writeFrame(out, new Entry(START, zipName, finalEnd, null));
+                for (Range range : open) {
+                    writeFrame(out, new Entry(LEASE, null, range.start(), range.end()));
+                }
+                writeFrame(out, new Entry(CURSOR, null, cursor, null));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось собрать снимок журнала", e);
+        }
+        return snapshot.toByteArray();
+    }
+
+    // Пишет на диск только поток flusher, поэтому порядок записей сохраняется
+    private void flush() {
+        byte[] snapshot;
+        byte[] pending;
+        synchronized (this) {
+            snapshot = pendingSnapshot;
+            pendingSnapshot = null;
+            pending = buffer.toByteArray();
+            buffer.reset();
+        }
+
+        try {
+            if (snapshot != null) {
+                writeSnapshot(snapshot);
+                channel.truncate(0);
+                channel.position(0);
+            }
+            if (pending.length > 0) {
+                ByteBuffer data = ByteBuffer.wrap(pending);
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            }
+            if (snapshot != null || pending.length > 0) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            System.out.println("Ошибка записи журнала: " + e.getMessage());
+        }
+    }
+
+    private void writeSnapshot(byte[] snapshot) throws IOException {
+        Path target = Paths.get(journalPath, SNAPSHOT_FILE);
+        Path temp = Paths.get(journalPath, SNAPSHOT_FILE + ".tmp");
+        try (FileChannel snapshotChannel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer data = ByteBuffer.wrap(snapshot);
+            while (data.hasRemaining()) {
+                snapshotChannel.write(data);
+            }
+            snapshotChannel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Возвращает длину целой части файла: чтение останавливается на первой битой записи
+    private long replay(Path file, boolean tolerateTail) throws IOException {
+        if (!Files.exists(file)) return 0;
+
+        long valid = 0;
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+             InputStream input = Channels.newInputStream(fileChannel);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(input))) {
+            while (true) {
+                int length;
+                long checksum;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt() & 0xFFFFFFFFL;
+                    if (length <= 0 || length > MAX_RECORD_SIZE) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != checksum) break;
+
+                Entry entry = readEntry(new DataInputStream(new ByteArrayInputStream(payload)));
+                // Журнал должен начинаться с заголовка того же поколения, что и снимок
+                if (tolerateTail && valid == 0 && (entry.type() != GENERATION || entry.first().longValue() != generation)) {
+                    break;
+                }
+                synchronized (this) {
+                    apply(entry);
+                }
+                valid += 8 + length;
+            }
+        }
+
+        if (!tolerateTail && valid != Files.size(file)) {
+            throw new IOException("Снимок журнала повреждён: " + file);
+        }
+        return valid;
+    }
+
+    private static void writeFrame(DataOutputStream out, Entry entry) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(32);
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeByte(entry.type());
+        switch (entry.type()) {
+            case START -> {
+                payload.writeUTF(entry.zipName());
+                writeNumber(payload, entry.first());
+            }
+            case LEASE, DONE -> {
+                writeNumber(payload, entry.first());
+                writeNumber(payload, entry.second());
+            }
+            case CURSOR, GENERATION -> writeNumber(payload, entry.first());
+            default -> {}
+        }
+
+        byte[] bytes = payloadBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        out.writeInt(bytes.length);
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case START -> new Entry(type, in.readUTF(), readNumber(in), null);
+            case LEASE, DONE -> new Entry(type, null, readNumber(in), readNumber(in));
+            case CURSOR, GENERATION -> new Entry(type, null, readNumber(in), null);
+            default -> new Entry(type, null, null, null);
+        };
+    }
+
+    private static void writeNumber(DataOutputStream out, BigInteger value) throws IOException {
+        byte[] bytes = value.toByteArray();
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static BigInteger readNumber(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new BigInteger(bytes);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(flushIntervalMs * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        channel.close();
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.melancholia.distributor.distributor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.melancholia.distributor.dto.Task;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отдельная стадия свёртки результатов. HTTP-поток только учитывает задачу и кладёт результат
+ * в очередь, @Process вызывается в своём потоке. Очередь ограничена queue-capacity: когда
+ * места нет, приём результатов отклоняется и воркер повторяет отправку позже.
+ * <p>
+ * Плагин копит результат в памяти, поэтому @Checkpoint вызывается из этого же потока:
+ * раз в checkpoint-interval-ms, в конце задачи и при остановке. Выполнение задачи пишется
+ * в журнал только после того, как её результат сохранён: при падении до этого диапазон
+ * посчитается заново, а не потеряется.
+ */
+@Component
+public class ResultReducer {
+
+    @Autowired
+    private DistributorJarService distributorJarService;
+    @Autowired
+    private DistributorService distributorService;
+    @Autowired
+    private JobJournal jobJournal;
+    @Value("${reducer.queue-capacity}")
+    private int queueCapacity;
+    @Value("${reducer.checkpoint-interval-ms}")
+    private long checkpointIntervalMs;
+
+    private final BlockingQueue<Reduction> queue = new LinkedBlockingQueue<>();
+    // Места в очереди резервируются до учёта задач, чтобы отказ не оставлял задачу учтённой без результата
+    private Semaphore slots;
+    private final ExecutorService reducerExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "result-reducer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong reduced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile double reduceMs;
+    private volatile double latencyMs;
+    private long lastCheckpoint = System.nanoTime();
+    // Задачи, результаты которых свёрнуты, но ещё не сохранены. Трогает только поток свёртки
+    private final List<Task> unsaved = new ArrayList<>();
+
+    private static final double SMOOTHING = 0.3;
+    // Отметка конца задачи: всё, что было в очереди до неё, уже свёрнуто
+    private static final Reduction FINISH = new Reduction(null, null, 0);
+
+    public record Accepted(Task task, JsonNode result) {}
+
+    private record Reduction(Task task, JsonNode result, long enqueuedAt) {}
+
+    @PostConstruct
+    public void init() {
+        slots = new Semaphore(queueCapacity);
+        reducerExecutor.execute(this::drain);
+    }
+
+    public boolean tryReserve(int count) {
+        if (slots.tryAcquire(count)) return true;
+        rejected.addAndGet(count);
+        return false;
+    }
+
+    public void release(int count) {
+        slots.release(count);
+    }
+
+    public void submit(List<Accepted> results, boolean finished) {
+        long now = System.nanoTime();
+        results.forEach(accepted -> queue.add(new Reduction(accepted.task(), accepted.result(), now)));
+        if (finished) queue.add(FINISH);
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Reduction reduction;
+            try {
+                reduction = queue.poll(checkpointIntervalMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (reduction == null || System.nanoTime() - lastCheckpoint >= checkpointIntervalMs * 1_000_000) {
+                checkpoint("periodic");
+            }
+            if (reduction == null) continue;
+
+            if (reduction == FINISH) {
+                checkpoint("final");
+                System.out.println("Все результаты свёрнуты, задача завершена");
+                distributorService.stopGlobalTask();
+                continue;
+            }
+
+            long started = System.nanoTime();
+            try {
+                distributorJarService.executeProcessResult(reduction.result().toString());
+            } catch (Exception e) {
+                System.out.println("Ошибка свёртки результата: " + e.getMessage());
+            } finally {
+                unsaved.add(reduction.task());
+                slots.release();
+            }
+            long finished = System.nanoTime();
+
+            reduced.incrementAndGet();
+            reduceMs += SMOOTHING * ((finished - started) / 1_000_000.0 - reduceMs);
+            latencyMs += SMOOTHING * ((finished - reduction.enqueuedAt()) / 1_000_000.0 - latencyMs);
+        }
+        checkpoint("shutdown");
+    }
+
+    private void checkpoint(String reason) {
+        lastCheckpoint = System.nanoTime();
+        try {
+            distributorJarService.executeCheckpoint(reason);
+        } catch (Exception e) {
+            // Задачи остаются несохранёнными и попадут в журнал после следующего удачного сохранения
+            System.out.println("Ошибка сохранения результата: " + e.getMessage());
+            return;
+        }
+        unsaved.forEach(jobJournal::done);
+        unsaved.clear();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", queueCapacity - slots.availablePermits());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("reduced", reduced.get());
+        stats.put("rejected", rejected.get());
+        stats.put("reduceMs", Math.round(reduceMs * 100) / 100.0);
+        stats.put("latencyMs", Math.round(latencyMs * 100) / 100.0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reducerExecutor.shutdownNow();
+    }
+
+}
@@ -2,27 +2,74 @@ package com.melancholia.distributor.distributor;
 
 import com.melancholia.distributor.dto.Task;
 import com.melancholia.distributor.dto.Worker;
+import com.melancholia.distributor.utils.RangeSet;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Component
 public class TaskManager {
 
     @Value("${task-manager.subtask-size}")
     private int subtaskSize;
-    @Value("${task-manager.subtasks-count}")
-    private int subtasksCount;
+    @Value("${task-manager.max-subtask-size}")
+    private long maxSubtaskSize;
+    @Value("${task-manager.target-duration-ms}")
+    private long targetDurationMs;
+    @Value("${task-manager.speculation-factor}")
+    private double speculationFactor;
+    @Value("${task-manager.speculation-min-ms}")
+    private long speculationMinMs;
     @Autowired
     private String callbackUrl;
-    private List<Task> tasks = new ArrayList<>();
-    private BigInteger start = BigInteger.ZERO;
-    private BigInteger finalEnd;
+    @Autowired
+    private JobJournal jobJournal;
+    // pending - возвращённые задачи, которые нужно выдать повторно, leased - выданные задачи
+    // каждого воркера (ключ - адрес воркера, у воркера их может быть несколько из-за предвыборки),
+    // completed - уже учтённые диапазоны (слитыми интервалами), чтобы повторный ответ не
+    // обрабатывался дважды. Новые диапазоны нарезаются по требованию от курсора, очередь
+    // заранее не заполняется
+    private final Queue<Task> pending = new ConcurrentLinkedQueue<>();
+    private final Map<String, Map<Task, Task>> leased = new ConcurrentHashMap<>();
+    private final RangeSet completed = new RangeSet();
+    // Сглаженная скорость каждого воркера (единиц диапазона в миллисекунду), по ней
+    // подбирается размер следующей задачи так, чтобы она считалась около targetDurationMs
+    private final Map<String, Double> throughput = new ConcurrentHashMap<>();
+    // Время от выдачи до результата у последних задач, по его медиане ищем отстающие задачи.
+    // speculated - диапазоны, у которых уже есть дубликат на другом воркере
+    private final long[] leaseDurations = new long[DURATION_WINDOW];
+    private int leaseDurationCount;
+    private final Set<Task> speculated = ConcurrentHashMap.newKeySet();
+    // Когда воркер последний раз сдал задачу (System.nanoTime)
+    private final Map<String, Long> lastCompletion = new ConcurrentHashMap<>();
+    // Лучшая стоимость среди принятых результатов. Уходит воркерам в каждой задаче как верхняя
+    // граница, чтобы они не перебирали ветки, которые заведомо не лучше уже найденного
+    private final AtomicLong bound = new AtomicLong(Long.MAX_VALUE);
+    // Завершение задачи ставится в свёртку ровно один раз, даже если последние пачки пришли одновременно
+    private final AtomicBoolean finishClaimed = new AtomicBoolean();
+    private final AtomicLong cursor = new AtomicLong();
+    private BigInteger wideCursor = BigInteger.ZERO;
+    private volatile long finalEndLong;
+    private volatile boolean wideJob;
+    private volatile BigInteger finalEnd;
+
+    private static final double THROUGHPUT_SMOOTHING = 0.3;
+    private static final int DURATION_WINDOW = 64;
 
     public BigInteger getFinalEnd() {
         return finalEnd;
@@ -30,66 +77,278 @@ public class TaskManager {
 
     public void setFinalEnd(String finalEnd) {
         System.out.println("Конечная точка установлена: " + finalEnd);
-        this.finalEnd = new BigInteger(finalEnd);
+        BigInteger end = new BigInteger(finalEnd);
+        this.wideJob = end.bitLength() >= Long.SIZE;
+        this.finalEndLong = wideJob ? Long.MAX_VALUE : end.longValue();
+        this.finalEnd = end;
     }
 
-    public Task getTask() {
-        Optional<Task> task = tasks.stream().filter(taskDTO -> taskDTO.getWorker() == null).findFirst();
-        if (task.isPresent()) return task.get();
-        if (start.equals(finalEnd)) return null;
+    public Task getTask(String worker, int prefetchDepth) {
+        while (true) {
+            Map<Task, Task> workerLeases = leased.computeIfAbsent(worker, key -> new ConcurrentHashMap<>());
+            synchronized (workerLeases) {
+                // Воркера могли снять с учёта, пока мы ждали блокировку
+                if (leased.get(worker) != workerLeases) continue;
+                if (workerLeases.size() >= prefetchDepth) return null;
 
-        generateTasks();
-        return getTask();
+                Task task = nextPending(worker);
+                // Новых диапазонов нет - простаивающий воркер дублирует отстающую задачу
+                if (task == null && workerLeases.isEmpty()) task = speculate(worker);
+                if (task == null) return null;
+
+                long currentBound = bound.get();
+                task.setBound(currentBound == Long.MAX_VALUE ? null : currentBound);
+                task.setWorker(worker);
+                task.setLeasedAt(System.nanoTime());
+                workerLeases.put(task, task);
+                return task;
+            }
+        }
     }
 
-    private void generateTasks() {
-        System.out.println("Генерация новых задач");
+    private Task nextPending(String worker) {
+        Task task;
+        while ((task = pending.poll()) != null) {
+            if (!isCompleted(task)) return task;
+        }
+        return cutRange(subtaskSizeFor(worker));
+    }
 
-        for (int i = 0; i < subtasksCount; i++) {
+    private Task speculate(String worker) {
+        long median = medianLeaseDuration();
+        if (median < 0) return null;
+        long threshold = Math.max(speculationMinMs * 1_000_000, (long) (median * speculationFactor));
+        long now = System.nanoTime();
 
-            if (start.compareTo(finalEnd) >= 0) {
-                break;
+        // Воркер решает задачи по очереди, поэтому считается только самая старая его задача, и
+        // только с момента, когда он сдал предыдущую: остальные ещё ждут в очереди предвыборки
+        Task straggler = null;
+        long stragglerRunning = 0;
+        for (Map.Entry<String, Map<Task, Task>> entry : leased.entrySet()) {
+            if (entry.getKey().equals(worker)) continue;
+            Task oldest = null;
+            for (Task task : entry.getValue().values()) {
+                if (oldest == null || task.getLeasedAt() < oldest.getLeasedAt()) oldest = task;
             }
-
-            BigInteger end = start.add(BigInteger.valueOf(subtaskSize));
-            if (end.compareTo(finalEnd) > 0) {
-                end = finalEnd;
+            if (oldest == null || speculated.contains(oldest) || isCompleted(oldest)) continue;
+            long running = now - Math.max(oldest.getLeasedAt(), lastCompletion.getOrDefault(entry.getKey(), Long.MIN_VALUE));
+            if (running < threshold) continue;
+            if (straggler == null || running > stragglerRunning) {
+                straggler = oldest;
+                stragglerRunning = running;
             }
+        }
+        if (straggler == null || !speculated.add(straggler)) return null;
 
-            tasks.add(new Task(
-                    start.toString(),
-                    end.toString(),
-                    callbackUrl
-            ));
+        System.out.println("Задача " + straggler.getStart() + ":" + straggler.getEnd() + " у воркера " + straggler.getWorker()
+                + " выполняется " + stragglerRunning / 1_000_000 + " мс, дублируем её на " + worker);
+        return new Task(straggler.startValue(), straggler.endValue(), callbackUrl);
+    }
 
-            start = end;
+    // Как и для скорости, берём чистое время решения: ожидание в очереди предвыборки не делает задачу отстающей
+    private void recordLeaseDuration(Task task, long solveTimeMs) {
+        long duration = solveTimeMs >= 0 ? solveTimeMs * 1_000_000 : System.nanoTime() - task.getLeasedAt();
+        synchronized (leaseDurations) {
+            leaseDurations[leaseDurationCount++ % DURATION_WINDOW] = duration;
+        }
+    }
+
+    private long medianLeaseDuration() {
+        long[] window;
+        synchronized (leaseDurations) {
+            if (leaseDurationCount == 0) return -1;
+            window = Arrays.copyOf(leaseDurations, Math.min(leaseDurationCount, DURATION_WINDOW));
+        }
+        Arrays.sort(window);
+        return window[window.length / 2];
+    }
+
+    private long subtaskSizeFor(String worker) {
+        Double rate = throughput.get(worker);
+        if (rate == null) return subtaskSize;
+        return Math.max(1, Math.min(maxSubtaskSize, Math.round(rate * targetDurationMs)));
+    }
+
+    private void recordThroughput(String worker, Task task, long solveTimeMs) {
+        if (task.isWide()) return;
+        // Время из очереди предвыборки не учитываем, если воркер сообщил чистое время решения
+        double elapsedMs = Math.max(1, solveTimeMs >= 0
+                ? solveTimeMs
+                : (System.nanoTime() - task.getLeasedAt()) / 1_000_000.0);
+        double rate = (task.endLong() - task.startLong()) / elapsedMs;
+        throughput.merge(worker, rate,
+                (previous, current) -> previous + THROUGHPUT_SMOOTHING * (current - previous));
+    }
+
+    private Task cutRange(long size) {
+        if (finalEnd == null) return null;
+        if (wideJob) return cutWideRange(size);
+
+        long last = finalEndLong;
+        while (true) {
+            long from = cursor.get();
+            if (from >= last) return null;
+            long to = last - from <= size ? last : from + size;
+            if (cursor.compareAndSet(from, to)) return journaled(new Task(from, to, callbackUrl));
+        }
+    }
+
+    private synchronized Task cutWideRange(long size) {
+        if (wideCursor.compareTo(finalEnd) >= 0) return null;
+        BigInteger from = wideCursor;
+        BigInteger to = from.add(BigInteger.valueOf(size)).min(finalEnd);
+        wideCursor = to;
+        return journaled(new Task(from, to, callbackUrl));
+    }
+
+    // В журнал попадают только новые диапазоны: повторная выдача возвращённой задачи
+    // ничего не меняет, диапазон и так числится незавершённым
+    private Task journaled(Task task) {
+        jobJournal.lease(task);
+        return task;
+    }
 
-            if (start.compareTo(finalEnd) >= 0) {
-                break;
+    private boolean rangesExhausted() {
+        if (finalEnd == null) return false;
+        if (wideJob) {
+            synchronized (this) {
+                return wideCursor.compareTo(finalEnd) >= 0;
             }
         }
+        return cursor.get() >= finalEndLong;
     }
 
-    public void removeCompetedTask(Task task) {
+    public boolean completeTask(Task task, long solveTimeMs) {
+        String worker = task.getWorker();
+        Map<Task, Task> workerLeases = worker == null ? null : leased.get(worker);
+        Task leasedTask = workerLeases == null ? null : workerLeases.remove(task);
+        if (leasedTask != null) {
+            recordThroughput(worker, leasedTask, solveTimeMs);
+            recordLeaseDuration(leasedTask, solveTimeMs);
+            lastCompletion.put(worker, System.nanoTime());
+        }
+        if (!completed.add(task.startValue(), task.endValue())) {
+            System.out.println("Повторный результат задачи " + task.getStart() + ":" + task.getEnd() + " пропущен");
+            return false;
+        }
         System.out.println("Задача выполнена " + task.getStart() + ":" + task.getEnd());
-        tasks.remove(task);
+        return true;
+    }
+
+    // Первый результат выигрывает: дубликаты диапазона снимаются со всех воркеров,
+    // вызывающий отменяет их на самих воркерах
+    public List<Task> takeDuplicates(Task task) {
+        if (!speculated.remove(task)) return List.of();
+        List<Task> duplicates = new ArrayList<>();
+        for (Map<Task, Task> workerLeases : leased.values()) {
+            Task duplicate = workerLeases.remove(task);
+            if (duplicate != null) duplicates.add(duplicate);
+        }
+        return duplicates;
+    }
+
+    public void offerBound(long cost) {
+        bound.accumulateAndGet(cost, Math::min);
+    }
+
+    public void releaseTask(Task task) {
+        Map<Task, Task> workerLeases = task.getWorker() == null ? null : leased.get(task.getWorker());
+        if (workerLeases == null || !workerLeases.remove(task, task)) return;
+        task.setWorker(null);
+        pending.add(task);
+    }
+
+    public int leaseCount(String worker) {
+        Map<Task, Task> workerLeases = leased.get(worker);
+        return workerLeases == null ? 0 : workerLeases.size();
+    }
+
+    private boolean isCompleted(Task task) {
+        return completed.covers(task.startValue(), task.endValue());
+    }
+
+    // Задача выполнена, когда учтённые диапазоны покрывают весь [0, finalEnd)
+    public boolean isFinished() {
+        BigInteger end = finalEnd;
+        return end != null && completed.covers(BigInteger.ZERO, end);
+    }
+
+    // true только для первого вызывающего после того, как задача выполнена целиком
+    public boolean claimFinish() {
+        return isFinished() && finishClaimed.compareAndSet(false, true);
+    }
+
+    public Map<String, Object> progress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("finalEnd", finalEnd);
+        progress.put("completed", completed.coveredLength());
+        progress.put("completedIntervals", completed.intervalCount());
+        progress.put("pending", pending.size());
+        progress.put("leased", leased.values().stream().mapToInt(Map::size).sum());
+        progress.put("bound", bound.get() == Long.MAX_VALUE ? null : bound.get());
+        return progress;
     }
 
     public void taskRedistribution(List<Worker> worker) {
-        if (tasks.isEmpty()) return;
-        List<String> workersAddresses = worker.stream()
-                .map(Worker::fullAddress).toList();
-
-        for (Task task : tasks.stream().filter(task -> task.getWorker() != null).toList()) {
-            if (workersAddresses.contains(task.getWorker())) continue;
-            System.out.println("Воркер забросил свою задачу " +  task.getWorker());
-            task.setWorker(null);
+        if (leased.isEmpty()) return;
+        Set<String> workersAddresses = worker.stream()
+                .map(Worker::fullAddress)
+                .collect(Collectors.toSet());
+
+        for (String leaseHolder : leased.keySet()) {
+            if (workersAddresses.contains(leaseHolder)) continue;
+            Map<Task, Task> workerLeases = leased.remove(leaseHolder);
+            if (workerLeases == null) continue;
+            synchronized (workerLeases) {
+                for (Task task : workerLeases.keySet()) {
+                    System.out.println("Воркер " + leaseHolder + " забросил свою задачу " + task.getStart() + ":" + task.getEnd());
+                    task.setWorker(null);
+                    pending.add(task);
+                }
+                workerLeases.clear();
+            }
+        }
+        throughput.keySet().retainAll(workersAddresses);
+        lastCompletion.keySet().retainAll(workersAddresses);
+    }
+
+    // Восстановление после перезапуска: новые диапазоны режутся с курсора, а выданные
+    // до падения и не завершённые уходят в очередь на повторную выдачу
+    public synchronized void restore(BigInteger restoredCursor, List<JobJournal.Range> open) {
+        reset();
+        if (wideJob) {
+            wideCursor = restoredCursor;
+        } else {
+            cursor.set(restoredCursor.longValueExact());
+        }
+        // Всё до курсора, кроме незавершённых диапазонов, уже выполнено
+        List<JobJournal.Range> sorted = open.stream()
+                .sorted(Comparator.comparing(JobJournal.Range::start))
+                .toList();
+        BigInteger done = BigInteger.ZERO;
+        for (JobJournal.Range range : sorted) {
+            completed.add(done, range.start());
+            done = done.max(range.end());
+            pending.add(new Task(range.start(), range.end(), callbackUrl));
         }
+        completed.add(done, restoredCursor);
+        System.out.println("Восстановлен ход задачи: курсор " + restoredCursor + ", повторно выдадим диапазонов " + open.size());
     }
 
-    public void reset() {
-        start = BigInteger.ZERO;
-        tasks = new ArrayList<>();
+    public synchronized void reset() {
+        cursor.set(0);
+        wideCursor = BigInteger.ZERO;
+        pending.clear();
+        leased.clear();
+        completed.clear();
+        throughput.clear();
+        lastCompletion.clear();
+        speculated.clear();
+        bound.set(Long.MAX_VALUE);
+        finishClaimed.set(false);
+        synchronized (leaseDurations) {
+            leaseDurationCount = 0;
+        }
     }
 
 }
@@ -0,0 +1,198 @@
+package com.melancholia.distributor.distributor;
+
+import com.melancholia.distributor.dto.MembershipChanges;
+import com.melancholia.distributor.dto.MembershipEvent;
+import com.melancholia.distributor.dto.Worker;
+import com.melancholia.distributor.enums.MembershipEventType;
+import com.melancholia.distributor.utils.HttpSenderService;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Локальное зеркало состава воркеров. Менеджер версионирует свой реестр: при подключении
+ * зеркало получает изменения со своей версии (или снимок, если версия слишком старая), дальше
+ * одиночные изменения по SSE. Пропуск версии в потоке закрывается запросом /workers/changes.
+ * Каждое применённое изменение публикуется дальше как {@link MembershipEvent}.
+ * <p>
+ * Запрос /workers/changes идёт через общий RestTemplate и виден в /http-pool вместе с остальными.
+ * Поток SSE - единственный запрос через WebClient: это одно долгоживущее соединение, которое
+ * держит поток пула всё время работы, поэтому в пул HttpClient5 оно не входит. У него своё
+ * соединение без пула (закрывается при переподключении), тот же таймаут подключения, что у
+ * общего клиента, и без таймаута чтения - в потоке бывают долгие паузы. Его состояние
+ * отдаётся в /http-pool отдельно, см. {@link #streamStats()}.
+ */
+@Component
+public class WorkerDirectory {
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private HttpSenderService httpSenderService;
+    @Value("${http-client.connect-timeout-ms}")
+    private int connectTimeoutMs;
+    @Value("${manager.workers-stream-endpoint}")
+    private String workersStreamEndpoint;
+    @Value("${manager.workers-changes-endpoint}")
+    private String workersChangesEndpoint;
+
+    private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+    // -1 - зеркало пустое, первым придёт полный снимок
+    private volatile long version = -1;
+    private WebClient webClient;
+    private Disposable subscription;
+    private final AtomicLong disconnects = new AtomicLong();
+    private volatile boolean streamConnected;
+    // Досинхронизация блокирующая, поэтому из потока событий SSE она уходит сюда
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "worker-directory-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Duration RECONNECT_MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration RECONNECT_MAX_BACKOFF = Duration.ofSeconds(30);
+
+    @PostConstruct
+    public void init() {
+        HttpClient streamClient = HttpClient.create(ConnectionProvider.newConnection())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs);
+        webClient = webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(streamClient))
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        System.out.println("Подписка на изменения состава воркеров: " + workersStreamEndpoint);
+
+        // defer - при каждом переподключении запрашиваем изменения с текущей версии
+        subscription = Flux.defer(() -> webClient.get()
+                        .uri(workersStreamEndpoint + "?since={since}", version)
+                        .retrieve()
+                        .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<MembershipEvent>>() {})
+                        .doOnSubscribe(s -> streamConnected = true)
+                        .doFinally(signal -> {
+                            streamConnected = false;
+                            disconnects.incrementAndGet();
+                        }))
+                // Менеджер закрыл поток - переподключаемся
+                .repeatWhen(completed -> completed.delayElements(RECONNECT_MIN_BACKOFF))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, RECONNECT_MIN_BACKOFF)
+                        .maxBackoff(RECONNECT_MAX_BACKOFF)
+                        .transientErrors(true)
+                        .doBeforeRetry(signal -> System.out.println(
+                                "Поток изменений воркеров прерван, переподключение: " + signal.failure().getMessage())))
+                .subscribe(event -> apply(event.data()));
+    }
+
+    // Досинхронизация по версии: пустой ответ, если ничего не пропущено
+    public void refresh() {
+        try {
+            MembershipChanges changes = httpSenderService.sendGetRequest(
+                    workersChangesEndpoint + "?since=" + version, MembershipChanges.class);
+            if (changes != null) apply(changes.getData());
+        } catch (RestClientException e) {
+            System.out.println("Не удалось получить изменения списка воркеров: " + e.getMessage());
+        }
+    }
+
+    private synchronized void apply(MembershipEvent event) {
+        if (event == null || event.getType() == null) return;
+
+        switch (event.getType()) {
+            case SNAPSHOT -> {
+                // Ответ на запрос, отправленный до уже применённых изменений
+                if (event.getVersion() < version) return;
+                Set<String> addresses = event.getWorkers().stream().map(Worker::fullAddress).collect(Collectors.toSet());
+                event.getWorkers().forEach(worker -> workers.put(worker.fullAddress(), worker));
+                workers.keySet().retainAll(addresses);
+                System.out.println("Получен список воркеров: " + workers.size() + ", версия " + event.getVersion());
+            }
+            case DELTA -> {
+                if (event.getVersion() <= version) return;
+                event.getWorkers().forEach(worker -> workers.put(worker.fullAddress(), worker));
+                event.getRemoved().forEach(workers::remove);
+            }
+            case JOINED, UPDATED, LEFT -> {
+                if (event.getVersion() <= version) return;
+                if (event.getVersion() != version + 1) {
+                    // Часть изменений прошла мимо - догоняем запросом, это событие придёт в ответе
+                    System.out.println("Пропущены изменения воркеров " + (version + 1) + ".." + (event.getVersion() - 1));
+                    refreshExecutor.execute(this::refresh);
+                    return;
+                }
+                if (event.getType() == MembershipEventType.LEFT) {
+                    event.getWorkers().forEach(worker -> {
+                        workers.remove(worker.fullAddress());
+                        System.out.println("Воркер " + worker.fullAddress() + " покинул кластер");
+                    });
+                } else {
+                    event.getWorkers().forEach(worker -> workers.put(worker.fullAddress(), worker));
+                }
+            }
+        }
+
+        version = event.getVersion();
+        eventPublisher.publishEvent(event);
+    }
+
+    public Worker get(String address) {
+        return workers.get(address);
+    }
+
+    public List<Worker> getWorkers() {
+        return List.copyOf(workers.values());
+    }
+
+    public Set<String> addresses() {
+        return Set.copyOf(workers.keySet());
+    }
+
+    public Map<String, Object> streamStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("endpoint", workersStreamEndpoint);
+        stats.put("connected", streamConnected);
+        stats.put("disconnects", disconnects.get());
+        stats.put("version", version);
+        return stats;
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        refreshExecutor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.melancholia.distributor.dto;
+
+import java.util.List;
+
+public class BlobFetch {
+
+    private long size;
+    private List<String> sources;
+
+    public BlobFetch() {}
+
+    public BlobFetch(long size, List<String> sources) {
+        this.size = size;
+        this.sources = sources;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public List<String> getSources() {
+        return sources;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.melancholia.distributor.dto;
+
+import java.util.List;
+
+public class Bundle {
+
+    private String jarHash;
+    private String manifestHash;
+    private String archiveHash;
+
+    public Bundle() {}
+
+    public Bundle(String jarHash, String manifestHash, String archiveHash) {
+        this.jarHash = jarHash;
+        this.manifestHash = manifestHash;
+        this.archiveHash = archiveHash;
+    }
+
+    public String getJarHash() {
+        return jarHash;
+    }
+
+    public String getManifestHash() {
+        return manifestHash;
+    }
+
+    public String getArchiveHash() {
+        return archiveHash;
+    }
+
+    public List<String> hashes() {
+        return List.of(jarHash, manifestHash, archiveHash);
+    }
+
+}
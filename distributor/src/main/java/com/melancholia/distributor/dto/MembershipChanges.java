@@ -0,0 +1,37 @@
+package com.melancholia.distributor.dto;
+
+// Ответ менеджера на /workers/changes: тот же ApiBody, но с типизированным data,
+// чтобы изменения разбирались за один проход
+public class MembershipChanges {
+
+    private String message;
+    private int statusCode;
+    private MembershipEvent data;
+
+    public MembershipChanges() {}
+
+    public String getMessage() {
+        return message;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public MembershipEvent getData() {
+        return data;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public void setData(MembershipEvent data) {
+        this.data = data;
+    }
+
+}
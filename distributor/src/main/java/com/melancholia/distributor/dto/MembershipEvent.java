@@ -0,0 +1,56 @@
+package com.melancholia.distributor.dto;
+
+import com.melancholia.distributor.enums.MembershipEventType;
+
+import java.util.List;
+
+public class MembershipEvent {
+
+    private MembershipEventType type;
+    private long version;
+    private List<Worker> workers = List.of();
+    // Адреса ушедших воркеров, заполняется только в DELTA
+    private List<String> removed = List.of();
+
+    public MembershipEvent() {}
+
+    public MembershipEvent(MembershipEventType type, long version, List<Worker> workers, List<String> removed) {
+        this.type = type;
+        this.version = version;
+        this.workers = workers;
+        this.removed = removed;
+    }
+
+    public MembershipEventType getType() {
+        return type;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Worker> getWorkers() {
+        return workers;
+    }
+
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    public void setType(MembershipEventType type) {
+        this.type = type;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public void setWorkers(List<Worker> workers) {
+        this.workers = workers == null ? List.of() : workers;
+    }
+
+    public void setRemoved(List<String> removed) {
+        this.removed = removed == null ? List.of() : removed;
+    }
+
+}
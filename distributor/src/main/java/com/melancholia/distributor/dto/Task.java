@@ -1,32 +1,47 @@
 package com.melancholia.distributor.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonSetter;
 
+import java.math.BigInteger;
 import java.util.Objects;
 
 public class Task {
 
-    private String start;
-    private String end;
+    private long start;
+    private long end;
+    // Заполняются только для границ, которые не помещаются в long
+    private BigInteger wideStart;
+    private BigInteger wideEnd;
     private String callbackUrl;
-    @JsonIgnore
     private String worker;
+    // Лучшая известная стоимость на момент выдачи, null - пока неизвестна
+    private Long bound;
+    @JsonIgnore
+    private long leasedAt;
 
     public Task() {}
 
-    public Task(String start, String end, String callbackUrl) {
+    public Task(long start, long end, String callbackUrl) {
         this.start = start;
         this.end = end;
         this.callbackUrl = callbackUrl;
         this.worker = null;
     }
 
-    public String getStart() {
-        return start;
+    public Task(BigInteger start, BigInteger end, String callbackUrl) {
+        setStart(start);
+        setEnd(end);
+        this.callbackUrl = callbackUrl;
+        this.worker = null;
     }
 
-    public String getEnd() {
-        return end;
+    public Number getStart() {
+        return wideStart != null ? wideStart : start;
+    }
+
+    public Number getEnd() {
+        return wideEnd != null ? wideEnd : end;
     }
 
     public String getCallbackUrl() {
@@ -37,12 +52,60 @@ public class Task {
         return worker;
     }
 
-    public void setStart(String start) {
-        this.start = start;
+    public Long getBound() {
+        return bound;
     }
 
-    public void setEnd(String end) {
-        this.end = end;
+    public void setBound(Long bound) {
+        this.bound = bound;
+    }
+
+    @JsonIgnore
+    public long getLeasedAt() {
+        return leasedAt;
+    }
+
+    public void setLeasedAt(long leasedAt) {
+        this.leasedAt = leasedAt;
+    }
+
+    @JsonIgnore
+    public boolean isWide() {
+        return wideStart != null || wideEnd != null;
+    }
+
+    public long startLong() {
+        return start;
+    }
+
+    public long endLong() {
+        return end;
+    }
+
+    public BigInteger startValue() {
+        return wideStart != null ? wideStart : BigInteger.valueOf(start);
+    }
+
+    public BigInteger endValue() {
+        return wideEnd != null ? wideEnd : BigInteger.valueOf(end);
+    }
+
+    public void setStart(Number start) {
+        if (fitsInLong(start)) {
+            this.start = start.longValue();
+            this.wideStart = null;
+        } else {
+            this.wideStart = (BigInteger) start;
+        }
+    }
+
+    public void setEnd(Number end) {
+        if (fitsInLong(end)) {
+            this.end = end.longValue();
+            this.wideEnd = null;
+        } else {
+            this.wideEnd = (BigInteger) end;
+        }
     }
 
     public void setCallbackUrl(String callbackUrl) {
@@ -53,17 +116,42 @@ public class Task {
         this.worker = worker;
     }
 
+    // Воркер возвращает границы строкой, поэтому принимаем и число, и строку
+    @JsonSetter("start")
+    private void readStart(Object start) {
+        setStart(toNumber(start));
+    }
+
+    @JsonSetter("end")
+    private void readEnd(Object end) {
+        setEnd(toNumber(end));
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number number) return number;
+        BigInteger parsed = new BigInteger(value.toString());
+        return parsed.bitLength() < Long.SIZE ? (Number) parsed.longValue() : parsed;
+    }
+
+    private static boolean fitsInLong(Number value) {
+        return !(value instanceof BigInteger bigValue) || bigValue.bitLength() < Long.SIZE;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Task task = (Task) o;
-        return Objects.equals(start, task.start) && Objects.equals(end, task.end);
+        return start == task.start && end == task.end
+                && Objects.equals(wideStart, task.wideStart) && Objects.equals(wideEnd, task.wideEnd);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(start, end);
+        int result = Long.hashCode(start);
+        result = 31 * result + Long.hashCode(end);
+        result = 31 * result + Objects.hashCode(wideStart);
+        return 31 * result + Objects.hashCode(wideEnd);
     }
 
-}
\ No newline at end of file
+}
@@ -9,9 +9,14 @@ public class Worker {
     private String host;
     private int port;
     private WorkerStatusEnum workerStatus;
+    private int running;
+    private int queued;
+    private int prefetchDepth;
     private static final String INIT_ENDPOINT = "init";
     private static final String SOLVE_ENDPOINT = "solve";
     private static final String RESET_ENDPOINT = "reset";
+    private static final String BLOBS_ENDPOINT = "blobs";
+    private static final String CANCEL_ENDPOINT = "cancel";
 
     public Worker() {}
 
@@ -33,6 +38,15 @@ public class Worker {
     public String resetAddress() {
         return String.format("%s/%s", fullAddress(), RESET_ENDPOINT);
     }
+    public String cancelAddress() {
+        return String.format("%s/%s", fullAddress(), CANCEL_ENDPOINT);
+    }
+    public String blobAddress(String hash) {
+        return String.format("%s/%s/%s", fullAddress(), BLOBS_ENDPOINT, hash);
+    }
+    public String blobFetchAddress(String hash) {
+        return String.format("%s/fetch", blobAddress(hash));
+    }
 
     public String getHost() {
         return host;
@@ -50,6 +64,30 @@ public class Worker {
         this.workerStatus = workerStatus;
     }
 
+    public int getRunning() {
+        return running;
+    }
+
+    public void setRunning(int running) {
+        this.running = running;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public void setQueued(int queued) {
+        this.queued = queued;
+    }
+
+    public int getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
+    public void setPrefetchDepth(int prefetchDepth) {
+        this.prefetchDepth = prefetchDepth;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,11 @@
+package com.melancholia.distributor.enums;
+
+public enum MembershipEventType {
+
+    SNAPSHOT,
+    DELTA,
+    JOINED,
+    UPDATED,
+    LEFT
+
+}
@@ -4,6 +4,8 @@ import com.melancholia.distributor.distributor.DistributorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.stereotype.Service;
@@ -21,6 +23,10 @@ public class HttpSenderService {
 
     @Autowired
     private RestTemplate restTemplate;
+    // Для передачи архивов: свой таймаут ответа, см. HttpClientConfig
+    @Autowired
+    @Qualifier("blobRestTemplate")
+    private RestTemplate blobRestTemplate;
 
     public <T> T sendPostRequest(String url, Object data, Class<T> responseType) {
         try {
@@ -55,6 +61,35 @@ public class HttpSenderService {
         }
     }
 
+    public <T> T sendStreamingPutRequest(String url, Resource resource, Class<T> responseType) {
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            HttpEntity<Resource> requestEntity = new HttpEntity<>(resource, headers);
+
+            ResponseEntity<T> response = blobRestTemplate.exchange(url, HttpMethod.PUT, requestEntity, responseType);
+            return response.getBody();
+        } catch (RestClientException e) {
+            System.out.println("Ошибка при отправке PUT-запроса на " +  url + e.getMessage());
+            throw e;
+        }
+    }
+
+    // Запрос, на который узел отвечает только после передачи архива целиком
+    public <T> T sendBlobPostRequest(String url, Object data, Class<T> responseType) {
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            HttpEntity<Object> requestEntity = new HttpEntity<>(data, headers);
+
+            ResponseEntity<T> response = blobRestTemplate.postForEntity(url, requestEntity, responseType);
+            return response.getBody();
+        } catch (RestClientException e) {
+            System.out.println("Ошибка при отправке POST-запроса на " +  url + e.getMessage());
+            throw e;
+        }
+    }
+
     public <T> T sendMultipartPostRequest(String url, MultiValueMap<String, Object> multipartBody, Class<T> responseType) {
         try {
             HttpHeaders headers = new HttpHeaders();
@@ -0,0 +1,62 @@
+package com.melancholia.distributor.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Метод плагина, разрешённый один раз при загрузке: проверки доступа, создание экземпляра
+ * и приведение сигнатуры к (String)Object выполняются здесь, а не на каждый вызов.
+ */
+public class PluginMethod {
+
+    private static final Logger log = LoggerFactory.getLogger(PluginMethod.class);
+    private static final MethodType STRING_CALL = MethodType.methodType(Object.class, String.class);
+
+    private final String name;
+    private final MethodHandle handle;
+
+    private PluginMethod(String name, MethodHandle handle) {
+        this.name = name;
+        this.handle = handle;
+    }
+
+    public static PluginMethod of(Method method) throws ReflectiveOperationException {
+        return of(method, Modifier.isStatic(method.getModifiers()) ? null : newInstance(method.getDeclaringClass()));
+    }
+
+    public static PluginMethod of(Method method, Object instance) throws ReflectiveOperationException {
+        method.setAccessible(true);
+        MethodHandle handle = MethodHandles.lookup().unreflect(method);
+        if (!Modifier.isStatic(method.getModifiers())) {
+            handle = handle.bindTo(instance);
+        }
+        return new PluginMethod(method.getName(), handle.asType(STRING_CALL));
+    }
+
+    public static Object newInstance(Class<?> pluginClass) throws ReflectiveOperationException {
+        Constructor<?> constructor = pluginClass.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Object invoke(String argument) {
+        try {
+            return (Object) handle.invokeExact(argument);
+        } catch (Throwable e) {
+            log.error("Error invoking method {} : {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+}
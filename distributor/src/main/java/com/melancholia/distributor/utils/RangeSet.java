@@ -0,0 +1,72 @@
+package com.melancholia.distributor.utils;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Множество полуинтервалов [start, end), которые хранятся слитыми: соседние и пересекающиеся
+ * диапазоны объединяются при вставке. Память пропорциональна числу разрывов, а не числу
+ * добавленных диапазонов; вставка и проверка - O(log n) по числу интервалов.
+ */
+public class RangeSet {
+
+    // Ключ - начало интервала, значение - конец
+    private final TreeMap<BigInteger, BigInteger> intervals = new TreeMap<>();
+
+    /**
+     * Добавляет диапазон. Возвращает false, если он уже был покрыт целиком.
+     */
+    public synchronized boolean add(BigInteger start, BigInteger end) {
+        if (start.compareTo(end) >= 0) return false;
+        if (coversLocked(start, end)) return false;
+
+        BigInteger mergedStart = start;
+        BigInteger mergedEnd = end;
+
+        // Интервал слева, который касается или перекрывает новый
+        Map.Entry<BigInteger, BigInteger> left = intervals.floorEntry(start);
+        if (left != null && left.getValue().compareTo(start) >= 0) {
+            mergedStart = left.getKey();
+            mergedEnd = mergedEnd.max(left.getValue());
+            intervals.remove(left.getKey());
+        }
+
+        // Все интервалы, начинающиеся внутри нового или сразу за ним
+        Map.Entry<BigInteger, BigInteger> right;
+        while ((right = intervals.ceilingEntry(mergedStart)) != null && right.getKey().compareTo(mergedEnd) <= 0) {
+            mergedEnd = mergedEnd.max(right.getValue());
+            intervals.remove(right.getKey());
+        }
+
+        intervals.put(mergedStart, mergedEnd);
+        return true;
+    }
+
+    public synchronized boolean covers(BigInteger start, BigInteger end) {
+        return coversLocked(start, end);
+    }
+
+    private boolean coversLocked(BigInteger start, BigInteger end) {
+        Map.Entry<BigInteger, BigInteger> entry = intervals.floorEntry(start);
+        return entry != null && entry.getValue().compareTo(end) >= 0;
+    }
+
+    public synchronized int intervalCount() {
+        return intervals.size();
+    }
+
+    // Сумма длин всех интервалов
+    public synchronized BigInteger coveredLength() {
+        BigInteger total = BigInteger.ZERO;
+        for (Map.Entry<BigInteger, BigInteger> entry : intervals.entrySet()) {
+            total = total.add(entry.getValue().subtract(entry.getKey()));
+        }
+        return total;
+    }
+
+    public synchronized void clear() {
+        intervals.clear();
+    }
+
+}
@@ -5,7 +5,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -17,18 +16,21 @@ public class ReflectionUtils {
 
     private static final Logger log = LoggerFactory.getLogger(ReflectionUtils.class);
 
-    public static List<Method> getAnnotatedMethodsByName(Path jarFilePath, String className, String annotationName) throws Exception {
-        List<Method> annotatedMethods = new ArrayList<>();
-
+    public static Class<?> loadClass(Path jarFilePath, String className) throws Exception {
         File jarFile = jarFilePath.toFile();
         URL jarURL = jarFile.toURI().toURL();
         URLClassLoader classLoader = new URLClassLoader(new URL[]{jarURL});
 
-        Class<?> targetClass = Class.forName(className, true, classLoader);
+        return Class.forName(className, true, classLoader);
+    }
+
+    // Классы аннотаций ищем в том же загрузчике, что и сам класс плагина
+    public static List<Method> getAnnotatedMethods(Class<?> targetClass, String annotationName) {
+        List<Method> annotatedMethods = new ArrayList<>();
 
         Class<? extends Annotation> annotationClass = null;
         try {
-            annotationClass = (Class<? extends Annotation>) Class.forName(annotationName, true, classLoader);
+            annotationClass = (Class<? extends Annotation>) Class.forName(annotationName, true, targetClass.getClassLoader());
         } catch (ClassNotFoundException e) {
             log.error("Annotation class not found: {}", annotationName);
             return annotatedMethods;
@@ -45,28 +47,4 @@ public class ReflectionUtils {
         return annotatedMethods;
     }
 
-    public static Object executeMethod(Method method, Object[] args) {
-
-        method.setAccessible(true);
-
-        Object instance = null;
-        if (!java.lang.reflect.Modifier.isStatic(method.getModifiers())) {
-            Class<?> clazz = method.getDeclaringClass();
-            try {
-                instance = clazz.getDeclaredConstructor().newInstance();
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
-                     NoSuchMethodException e) {
-                log.error("Error: {}", e.getMessage());
-            }
-        }
-
-        try {
-            return method.invoke(instance, args);
-        } catch (Exception e) {
-            e.printStackTrace();
-            log.error("Error invoking method {} : {}", method.getName(), e.getMessage());
-            return null;
-        }
-    }
-
 }
@@ -0,0 +1,110 @@
+package com.melancholia.distributor.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение вызова метода плагина через PluginMethod с прежним путём ReflectionUtils.executeMethod
+ * (setAccessible, новый экземпляр и Method.invoke на каждый вызов).
+ * Запуск: mvn test-compile, затем main этого класса с test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PluginMethodBenchmark {
+
+    private static final String RESULT = "{\"route\":[0,1,2],\"totalCost\":42}";
+
+    private Method instanceMethod;
+    private Method staticMethod;
+    private PluginMethod cachedInstanceMethod;
+    private PluginMethod cachedStaticMethod;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        instanceMethod = SampleReducer.class.getDeclaredMethod("reduce", String.class);
+        staticMethod = SampleReducer.class.getDeclaredMethod("reduceStatic", String.class);
+        cachedInstanceMethod = PluginMethod.of(instanceMethod);
+        cachedStaticMethod = PluginMethod.of(staticMethod);
+    }
+
+    @Benchmark
+    public Object legacyInstance() {
+        return legacyExecute(instanceMethod, new Object[]{RESULT});
+    }
+
+    @Benchmark
+    public Object legacyStatic() {
+        return legacyExecute(staticMethod, new Object[]{RESULT});
+    }
+
+    @Benchmark
+    public Object pluginMethodInstance() {
+        return cachedInstanceMethod.invoke(RESULT);
+    }
+
+    @Benchmark
+    public Object pluginMethodStatic() {
+        return cachedStaticMethod.invoke(RESULT);
+    }
+
+    // Копия прежнего ReflectionUtils.executeMethod
+    private static Object legacyExecute(Method method, Object[] args) {
+        method.setAccessible(true);
+
+        Object instance = null;
+        if (!Modifier.isStatic(method.getModifiers())) {
+            try {
+                instance = method.getDeclaringClass().getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+
+        try {
+            return method.invoke(instance, args);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PluginMethodBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    public static class SampleReducer {
+
+        private int calls;
+
+        public Object reduce(String resultJson) {
+            calls++;
+            return resultJson.length() + calls;
+        }
+
+        public static Object reduceStatic(String resultJson) {
+            return resultJson.length();
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.melancholia.distributor.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RangeSetTest {
+
+    private static BigInteger n(long value) {
+        return BigInteger.valueOf(value);
+    }
+
+    @Test
+    void mergesAdjacentAndOverlappingRanges() {
+        RangeSet set = new RangeSet();
+
+        assertTrue(set.add(n(0), n(10)));
+        assertTrue(set.add(n(20), n(30)));
+        assertEquals(2, set.intervalCount());
+
+        assertTrue(set.add(n(10), n(20)));
+        assertEquals(1, set.intervalCount());
+        assertTrue(set.covers(n(0), n(30)));
+
+        assertTrue(set.add(n(25), n(40)));
+        assertEquals(1, set.intervalCount());
+        assertEquals(n(40), set.coveredLength());
+    }
+
+    @Test
+    void rejectsRangesThatAreAlreadyCovered() {
+        RangeSet set = new RangeSet();
+        set.add(n(0), n(100));
+
+        assertFalse(set.add(n(0), n(100)));
+        assertFalse(set.add(n(10), n(20)));
+        assertFalse(set.covers(n(90), n(110)));
+    }
+
+    @Test
+    void swallowsSeveralIntervalsAtOnce() {
+        RangeSet set = new RangeSet();
+        for (int i = 0; i < 10; i++) {
+            set.add(n(i * 10L), n(i * 10L + 5));
+        }
+        assertEquals(10, set.intervalCount());
+
+        set.add(n(3), n(97));
+        assertEquals(1, set.intervalCount());
+        assertTrue(set.covers(n(0), n(97)));
+        assertFalse(set.covers(n(0), n(98)));
+    }
+
+    @Test
+    void handlesBoundsBeyondLong() {
+        RangeSet set = new RangeSet();
+        BigInteger big = BigInteger.valueOf(Long.MAX_VALUE).multiply(n(4));
+
+        set.add(big, big.add(n(10)));
+        set.add(big.add(n(10)), big.add(n(20)));
+
+        assertEquals(1, set.intervalCount());
+        assertTrue(set.covers(big.add(n(5)), big.add(n(20))));
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.melancholia.manager;
+
+public class Heartbeat {
+
+    private String host;
+    private int port;
+    private WorkerState state;
+
+    public Heartbeat() {}
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public WorkerState getState() {
+        return state;
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.melancholia.manager;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Общий HTTP-клиент для запросов между узлами: пул keep-alive соединений на каждый хост
+ * и таймауты, чтобы зависший узел не держал поток бесконечно.
+ * При http-client.http2 = true используется JDK HttpClient с HTTP/2 (без статистики пула).
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${http-client.max-total}")
+    private int maxTotal;
+    @Value("${http-client.max-per-route}")
+    private int maxPerRoute;
+    @Value("${http-client.connect-timeout-ms}")
+    private long connectTimeoutMs;
+    @Value("${http-client.read-timeout-ms}")
+    private long readTimeoutMs;
+    @Value("${http-client.idle-timeout-ms}")
+    private long idleTimeoutMs;
+    @Value("${http-client.http2}")
+    private boolean http2;
+
+    @Bean
+    public PoolingHttpClientConnectionManager connectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(PoolingHttpClientConnectionManager connectionManager) {
+        return new RestTemplate(requestFactory(connectionManager));
+    }
+
+    private ClientHttpRequestFactory requestFactory(PoolingHttpClientConnectionManager connectionManager) {
+        if (http2) {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                    .build();
+            JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+            requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+            return requestFactory;
+        }
+
+        return new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleTimeoutMs))
+                .build());
+    }
+
+    public static Map<String, Object> poolStats(PoolingHttpClientConnectionManager connectionManager) {
+        Map<String, PoolStats> routes = new LinkedHashMap<>();
+        connectionManager.getRoutes().forEach(route ->
+                routes.put(route.getTargetHost().toURI(), connectionManager.getStats(route)));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total", connectionManager.getTotalStats());
+        stats.put("routes", routes);
+        return stats;
+    }
+
+}
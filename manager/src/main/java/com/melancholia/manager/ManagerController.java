@@ -1,12 +1,18 @@
 package com.melancholia.manager;
 
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
 
 
 @RestController
@@ -14,6 +20,8 @@ public class ManagerController {
 
     @Autowired
     private ManagerService managerService;
+    @Autowired
+    private PoolingHttpClientConnectionManager connectionManager;
 
     @PostMapping("/worker-register")
     public ResponseEntity<ApiBody> workerRegister(@RequestBody Worker request) {
@@ -29,9 +37,41 @@ public class ManagerController {
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    @PostMapping("/worker-heartbeat")
+    public ResponseEntity<ApiBody> workerHeartbeat(@RequestBody Heartbeat heartbeat) {
+        // Статус нужен индексу реестра, без него heartbeat не применить
+        if (heartbeat.getHost() == null || heartbeat.getState() == null || heartbeat.getState().getStatus() == null) {
+            ApiBody response = new ApiBody("В heartbeat нет адреса или статуса воркера", HttpStatus.BAD_REQUEST.value(), null);
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        managerService.heartbeat(heartbeat);
+        ApiBody response = new ApiBody("Heartbeat принят", HttpStatus.OK.value(), null);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @GetMapping(path = "/workers/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter workersStream(@RequestParam(defaultValue = "-1") long since) {
+        return managerService.subscribe(since);
+    }
+
+    @GetMapping("/workers/changes")
+    public ResponseEntity<ApiBody> workersChanges(@RequestParam long since) {
+        ApiBody response = new ApiBody("Изменения списка воркеров", HttpStatus.OK.value(), managerService.getChanges(since));
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
     @GetMapping("/get-workers")
-    public ResponseEntity<ApiBody> getWorkers() {
-        ApiBody response = new ApiBody("Активные воркеры", HttpStatus.OK.value(), managerService.getWorkers());
+    public ResponseEntity<ApiBody> getWorkers(@RequestParam(required = false) WorkerStatus status,
+                                              @RequestParam(defaultValue = "" + Integer.MAX_VALUE) int limit) {
+        List<Worker> workers = status == null ? managerService.getWorkers() : managerService.getWorkers(status, limit);
+        ApiBody response = new ApiBody("Активные воркеры", HttpStatus.OK.value(), workers);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @GetMapping("/http-pool")
+    public ResponseEntity<ApiBody> httpPoolStats() {
+        ApiBody response = new ApiBody("Статистика пула HTTP-соединений", HttpStatus.OK.value(),
+                HttpClientConfig.poolStats(connectionManager));
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
@@ -1,73 +1,71 @@
 package com.melancholia.manager;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.TaskScheduler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.*;
 
 @Service
 public class ManagerService {
 
-    private final Set<Worker> workerList = new HashSet<>();
-
-    @Autowired
-    private RestApiClient restApiClient;
+    // Воркеры сами присылают heartbeat, менеджер их не опрашивает: кто не отметился
+    // дольше lease-timeout-ms, считается ушедшим
     @Autowired
-    private Executor executor;
+    private WorkerRegistry workerRegistry;
     @Autowired
-    private TaskScheduler taskScheduler;
-
+    private MembershipStream membershipStream;
+    @Value("${membership.lease-timeout-ms}")
+    private long leaseTimeoutMs;
 
     public void registerWorker(Worker worker){
         System.out.println("Добавлен новый воркер " +  worker.getHost() + ":" + worker.getPort());
-        workerList.add(worker);
+        publish(workerRegistry.register(worker));
     }
 
     public void leaveWorker(Worker worker) {
-        System.out.println("Воркер удален " +  worker.getHost() + ":" + worker.getPort());
-        workerList.remove(worker);
+        MembershipEvent event = workerRegistry.remove(worker.fullAddress());
+        if (event != null) {
+            System.out.println("Воркер удален " +  worker.getHost() + ":" + worker.getPort());
+            publish(event);
+        }
     }
 
-    public Set<Worker> getWorkers(){
-        return workerList;
+    public void heartbeat(Heartbeat heartbeat) {
+        publish(workerRegistry.update(heartbeat.getHost(), heartbeat.getPort(), heartbeat.getState()));
     }
 
-    @Scheduled(fixedRate = 5000)
-    public void checkWorkersStatus() {
-        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workerList.size(), 10));
+    private void publish(MembershipEvent event) {
+        if (event != null) {
+            membershipStream.publish(event);
+        }
+    }
 
-        List<Future<?>> futures = new ArrayList<>();
+    public List<Worker> getWorkers(){
+        return workerRegistry.snapshot();
+    }
 
-        for (Worker worker : workerList) {
-            futures.add(executor.submit(() -> {
-                String workerAddress = worker.fullAddress();
-                try {
-                    ApiBody apiResponse = restApiClient.getRequest(worker.checkStateAddress(), ApiBody.class);
-                    worker.setWorkerStatus(WorkerStatus.valueOf(apiResponse.getData().toString()));
-                } catch (Exception e) {
-                    leaveWorker(worker);
-                }
-            }));
-        }
+    public List<Worker> getWorkers(WorkerStatus status, int limit) {
+        return workerRegistry.withStatus(status, limit);
+    }
+
+    public MembershipEvent getChanges(long since) {
+        return workerRegistry.changesSince(since);
+    }
+
+    public SseEmitter subscribe(long since) {
+        return membershipStream.subscribe(() -> workerRegistry.changesSince(since));
+    }
 
-        try {
-            for (Future<?> future : futures) {
-                try {
-                    future.get(3, TimeUnit.SECONDS);
-                } catch (TimeoutException e) {
-                    future.cancel(true);
-                }
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-        }  finally {
-            executor.shutdownNow();
+    @Scheduled(fixedRate = 1000)
+    public void expireWorkers() {
+        long deadline = System.currentTimeMillis() - leaseTimeoutMs;
+        for (MembershipEvent event : workerRegistry.expire(deadline)) {
+            event.getWorkers().forEach(worker ->
+                    System.out.println("Воркер не присылал heartbeat и удален " + worker.getHost() + ":" + worker.getPort()));
+            membershipStream.publish(event);
         }
     }
 
@@ -0,0 +1,45 @@
+package com.melancholia.manager;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Изменение состава воркеров с номером версии реестра. SNAPSHOT - полный список,
+ * DELTA - накопленные изменения (workers - добавленные и изменившиеся, removed - адреса
+ * ушедших), JOINED/UPDATED/LEFT - одиночные изменения из потока.
+ */
+public class MembershipEvent {
+
+    private final MembershipEventType type;
+    private final long version;
+    private final Collection<Worker> workers;
+    private final Collection<String> removed;
+
+    public MembershipEvent(MembershipEventType type, long version, Collection<Worker> workers, Collection<String> removed) {
+        this.type = type;
+        this.version = version;
+        this.workers = workers;
+        this.removed = removed;
+    }
+
+    public static MembershipEvent of(MembershipEventType type, long version, Worker worker) {
+        return new MembershipEvent(type, version, List.of(worker), List.of());
+    }
+
+    public MembershipEventType getType() {
+        return type;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Collection<Worker> getWorkers() {
+        return workers;
+    }
+
+    public Collection<String> getRemoved() {
+        return removed;
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.melancholia.manager;
+
+public enum MembershipEventType {
+
+    SNAPSHOT,
+    DELTA,
+    JOINED,
+    UPDATED,
+    LEFT
+
+}
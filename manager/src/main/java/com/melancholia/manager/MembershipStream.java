@@ -0,0 +1,55 @@
+package com.melancholia.manager;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Подписчики на изменения состава воркеров (Server-Sent Events). Новый подписчик сначала
+ * получает снимок или изменения с известной ему версии, затем только новые изменения.
+ */
+@Component
+public class MembershipStream {
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    public SseEmitter subscribe(Supplier<MembershipEvent> initial) {
+        SseEmitter emitter = new SseEmitter(0L);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+
+        // Сначала подключаем, потом считаем начальное состояние: изменение между этими шагами
+        // придёт подписчику дважды (он отбросит его по версии), но не потеряется
+        emitters.add(emitter);
+        if (!send(emitter, initial.get())) {
+            emitters.remove(emitter);
+        }
+        return emitter;
+    }
+
+    public void publish(MembershipEvent event) {
+        for (SseEmitter emitter : emitters) {
+            if (!send(emitter, event)) {
+                emitters.remove(emitter);
+            }
+        }
+    }
+
+    private boolean send(SseEmitter emitter, MembershipEvent event) {
+        try {
+            synchronized (emitter) {
+                emitter.send(SseEmitter.event().name(event.getType().name()).data(event));
+            }
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+}
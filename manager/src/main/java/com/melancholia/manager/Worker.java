@@ -1,25 +1,28 @@
 package com.melancholia.manager;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.Objects;
 
 public class Worker {
 
     private final String host;
     private final int port;
-    private WorkerStatus workerStatus;
+    // Состояние заменяется целиком, чтобы читатели не видели его наполовину обновлённым
+    private volatile WorkerState state = WorkerState.initial();
+    private volatile long lastSeen;
 
     public Worker(String host, int port) {
         this.host = host;
         this.port = port;
-        workerStatus = WorkerStatus.UNINITIALIZED;
     }
 
-    public String fullAddress() {
+    public static String address(String host, int port) {
         return String.format("http://%s:%d", host, port);
     }
 
-    public String checkStateAddress() {
-        return String.format("%s/%s", fullAddress(), "check-state");
+    public String fullAddress() {
+        return address(host, port);
     }
 
     public String getHost() {
@@ -30,12 +33,38 @@ public class Worker {
         return port;
     }
 
+    @JsonIgnore
+    public WorkerState getState() {
+        return state;
+    }
+
     public WorkerStatus getWorkerStatus() {
-        return workerStatus;
+        return state.getStatus();
+    }
+
+    public int getRunning() {
+        return state.getRunning();
+    }
+
+    public int getQueued() {
+        return state.getQueued();
+    }
+
+    public int getPrefetchDepth() {
+        return state.getPrefetchDepth();
+    }
+
+    @JsonIgnore
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    public void touch() {
+        this.lastSeen = System.currentTimeMillis();
     }
 
-    public void setWorkerStatus(WorkerStatus workerStatus) {
-        this.workerStatus = workerStatus;
+    public void applyState(WorkerState state) {
+        this.state = state;
     }
 
     @Override
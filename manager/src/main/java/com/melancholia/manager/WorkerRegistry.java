@@ -0,0 +1,198 @@
+package com.melancholia.manager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр воркеров, ключ - адрес host:port. Все изменения одного воркера идут через
+ * compute по его ключу, поэтому индекс по статусам всегда согласован с основной таблицей,
+ * а разные воркеры обновляются параллельно (ConcurrentHashMap блокирует только свою ячейку).
+ * <p>
+ * Каждый вход, уход и смена статуса увеличивают версию реестра и попадают в ограниченный
+ * журнал изменений, по которому клиенты получают только то, что изменилось с их версии.
+ * Изменения счётчиков задач без смены статуса версию не меняют.
+ */
+@Component
+public class WorkerRegistry {
+
+    private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+    private final Map<WorkerStatus, Set<Worker>> byStatus = new EnumMap<>(WorkerStatus.class);
+    // Снимок пересобирается только при входе или уходе воркера; состояние каждого воркера
+    // хранится одной неизменяемой ссылкой, поэтому сериализация снимка всегда согласована
+    private volatile List<Worker> snapshot = List.of();
+    private volatile boolean snapshotStale;
+
+    @Value("${membership.change-log-size}")
+    private int changeLogSize;
+    private final Deque<Change> changeLog = new ArrayDeque<>();
+    // Защищены блокировкой changeLog. members - состав реестра ровно на версию version: запись
+    // в workers делает compute уже после record, поэтому полный снимок для подписчиков берётся
+    // отсюда, иначе он мог бы получить новую версию без самого изменения
+    private long version;
+    private final Map<String, Worker> members = new LinkedHashMap<>();
+
+    // worker == null означает, что воркер ушёл
+    private record Change(long version, String address, Worker worker) {}
+
+    public WorkerRegistry() {
+        for (WorkerStatus status : WorkerStatus.values()) {
+            byStatus.put(status, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    public MembershipEvent register(Worker worker) {
+        MembershipEvent[] event = new MembershipEvent[1];
+        workers.computeIfAbsent(worker.fullAddress(), address -> {
+            worker.touch();
+            byStatus.get(worker.getWorkerStatus()).add(worker);
+            event[0] = record(MembershipEventType.JOINED, address, worker);
+            return worker;
+        });
+        invalidateSnapshot(event[0]);
+        return event[0];
+    }
+
+    /**
+     * Обновляет состояние воркера по heartbeat (и добавляет его, если он ещё не известен).
+     * Возвращает изменение, о котором стоит сообщить подписчикам, или null.
+     */
+    public MembershipEvent update(String host, int port, WorkerState state) {
+        MembershipEvent[] event = new MembershipEvent[1];
+        workers.compute(Worker.address(host, port), (address, existing) -> {
+            Worker worker = existing != null ? existing : new Worker(host, port);
+            WorkerState previous = worker.getState();
+
+            worker.applyState(state);
+            worker.touch();
+
+            if (existing == null) {
+                byStatus.get(worker.getWorkerStatus()).add(worker);
+                event[0] = record(MembershipEventType.JOINED, address, worker);
+            } else if (previous.getStatus() != state.getStatus() || previous.getPrefetchDepth() != state.getPrefetchDepth()) {
+                byStatus.get(previous.getStatus()).remove(worker);
+                byStatus.get(worker.getWorkerStatus()).add(worker);
+                event[0] = record(MembershipEventType.UPDATED, address, worker);
+            }
+            return worker;
+        });
+        invalidateSnapshot(event[0]);
+        return event[0];
+    }
+
+    public Worker get(String address) {
+        return workers.get(address);
+    }
+
+    public MembershipEvent remove(String address) {
+        MembershipEvent[] event = new MembershipEvent[1];
+        workers.computeIfPresent(address, (key, worker) -> {
+            byStatus.get(worker.getWorkerStatus()).remove(worker);
+            event[0] = record(MembershipEventType.LEFT, key, worker);
+            return null;
+        });
+        invalidateSnapshot(event[0]);
+        return event[0];
+    }
+
+    public List<MembershipEvent> expire(long deadline) {
+        List<MembershipEvent> expired = new ArrayList<>();
+        for (Worker worker : workers.values()) {
+            if (worker.getLastSeen() >= deadline) continue;
+            // Перепроверяем под блокировкой ключа: heartbeat мог прийти после чтения lastSeen
+            workers.computeIfPresent(worker.fullAddress(), (key, current) -> {
+                if (current.getLastSeen() >= deadline) return current;
+                byStatus.get(current.getWorkerStatus()).remove(current);
+                expired.add(record(MembershipEventType.LEFT, key, current));
+                return null;
+            });
+        }
+        expired.forEach(this::invalidateSnapshot);
+        return expired;
+    }
+
+    // Вызывается под блокировкой ключа воркера, поэтому версии одного воркера идут по порядку
+    private MembershipEvent record(MembershipEventType type, String address, Worker worker) {
+        synchronized (changeLog) {
+            long next = ++version;
+            if (type == MembershipEventType.LEFT) members.remove(address);
+            else members.put(address, worker);
+            changeLog.addLast(new Change(next, address, type == MembershipEventType.LEFT ? null : worker));
+            while (changeLog.size() > changeLogSize) {
+                changeLog.removeFirst();
+            }
+            return MembershipEvent.of(type, next, worker);
+        }
+    }
+
+    // Только после того, как compute применил изменение к таблице, иначе снимок,
+    // пересобранный в промежутке, останется без него
+    private void invalidateSnapshot(MembershipEvent event) {
+        if (event != null && event.getType() != MembershipEventType.UPDATED) snapshotStale = true;
+    }
+
+    /**
+     * Изменения после версии since, по одному итоговому состоянию на воркер. Если журнал
+     * уже не покрывает since (или since неизвестна), возвращается полный снимок.
+     */
+    public MembershipEvent changesSince(long since) {
+        synchronized (changeLog) {
+            long oldest = changeLog.isEmpty() ? version + 1 : changeLog.peekFirst().version();
+            if (since < 0 || since > version || since + 1 < oldest) {
+                return new MembershipEvent(MembershipEventType.SNAPSHOT, version, List.copyOf(members.values()), List.of());
+            }
+
+            Map<String, Worker> latest = new LinkedHashMap<>();
+            for (Change change : changeLog) {
+                if (change.version() > since) latest.put(change.address(), change.worker());
+            }
+            List<Worker> upserts = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            latest.forEach((address, worker) -> {
+                if (worker == null) removed.add(address);
+                else upserts.add(worker);
+            });
+            return new MembershipEvent(MembershipEventType.DELTA, version, upserts, removed);
+        }
+    }
+
+    public List<Worker> snapshot() {
+        if (snapshotStale) {
+            synchronized (this) {
+                if (snapshotStale) {
+                    snapshotStale = false;
+                    snapshot = List.copyOf(workers.values());
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    // Обходим только индекс нужного статуса и останавливаемся, набрав limit воркеров
+    public List<Worker> withStatus(WorkerStatus status, int limit) {
+        List<Worker> result = new ArrayList<>(Math.min(limit, 64));
+        for (Worker worker : byStatus.get(status)) {
+            if (result.size() >= limit) break;
+            result.add(worker);
+        }
+        return result;
+    }
+
+    public int count(WorkerStatus status) {
+        return byStatus.get(status).size();
+    }
+
+    public int size() {
+        return workers.size();
+    }
+
+}
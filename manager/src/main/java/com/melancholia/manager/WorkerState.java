@@ -0,0 +1,39 @@
+package com.melancholia.manager;
+
+public class WorkerState {
+
+    private WorkerStatus status;
+    private int running;
+    private int queued;
+    private int prefetchDepth;
+
+    public WorkerState() {}
+
+    public WorkerState(WorkerStatus status, int running, int queued, int prefetchDepth) {
+        this.status = status;
+        this.running = running;
+        this.queued = queued;
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    public static WorkerState initial() {
+        return new WorkerState(WorkerStatus.UNINITIALIZED, 0, 0, 0);
+    }
+
+    public WorkerStatus getStatus() {
+        return status;
+    }
+
+    public int getRunning() {
+        return running;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Квадратная матрица стоимостей переходов, лежащая вне кучи одним плоским буфером по строкам.
+ * Ячейка - беззнаковое int16 или int32; 0 означает, что ребра нет. Экземпляр только для чтения
+ * и разделяется всеми задачами воркера.
+ */
+public final class DistanceMatrix {
+
+    private final int size;
+    private final int cellBytes;
+    private final ByteBuffer cells;
+
+    DistanceMatrix(int size, int cellBytes, ByteBuffer cells) {
+        if ((long) size * size * cellBytes != cells.remaining()) {
+            throw new IllegalArgumentException("Matrix body has " + cells.remaining() + " bytes, expected "
+                    + (long) size * size * cellBytes);
+        }
+        this.size = size;
+        this.cellBytes = cellBytes;
+        this.cells = cells.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Для архивов в старом формате: JSON-матрица переносится в такой же плоский буфер int32
+    public static DistanceMatrix of(int[][] matrix) {
+        ByteBuffer cells = ByteBuffer.allocateDirect(matrix.length * matrix.length * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int[] row : matrix) {
+            if (row.length != matrix.length) {
+                throw new IllegalArgumentException("Matrix is not square");
+            }
+            for (int cost : row) {
+                cells.putInt(cost);
+            }
+        }
+        return new DistanceMatrix(matrix.length, Integer.BYTES, cells.flip());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int cost(int from, int to) {
+        return cost(from * size + to);
+    }
+
+    // index - номер ячейки в плоском буфере по строкам, from * size + to; вне int он не выходит,
+    // потому что весь буфер умещается в один ByteBuffer
+    int cost(int index) {
+        return cellBytes == Short.BYTES
+                ? Short.toUnsignedInt(cells.getShort(index * Short.BYTES))
+                : cells.getInt(index * Integer.BYTES);
+    }
+
+}
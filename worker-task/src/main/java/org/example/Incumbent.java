@@ -0,0 +1,66 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Лучший найденный маршрут, общий для всех потоков задачи. Стоимость и номер слота с маршрутом
+ * упакованы в одно слово и публикуются CAS, поэтому перебор читает границу одним volatile-чтением,
+ * а улучшение не берёт блокировок и ничего не выделяет.
+ * Каждый SearchKernel регистрирует свой буфер как слот, и пишет в него только он сам. Пока слово указывает на слот,
+ * владелец перезаписывает его только ради нового, ещё более дешёвого маршрута: если его CAS проиграет,
+ * слово уже указывает на чужой слот. Маршрут читается после завершения всех потоков задачи.
+ * Начальная стоимость - граница, пришедшая от дистрибьютора: маршруты не дешевле её не нужны.
+ */
+final class Incumbent {
+
+    private static final int SLOT_BITS = 20;
+    private static final long NO_ROUTE = (1L << SLOT_BITS) - 1;
+    static final long MAX_COST = (1L << (Long.SIZE - SLOT_BITS - 1)) - 1;
+
+    private final AtomicLong packed;
+    // Регистрация - раз на поток задачи (см. SearchKernels), поэтому хватает простой блокировки
+    private final List<int[]> slots = new ArrayList<>();
+
+    Incumbent(long bound) {
+        this.packed = new AtomicLong(pack(Math.min(bound, MAX_COST), NO_ROUTE));
+    }
+
+    private static long pack(long cost, long slot) {
+        return cost << SLOT_BITS | slot;
+    }
+
+    long cost() {
+        return packed.get() >>> SLOT_BITS;
+    }
+
+    int register(int[] routeBuffer) {
+        synchronized (slots) {
+            if (slots.size() >= NO_ROUTE) {
+                throw new IllegalStateException("Too many search kernels in one task: " + slots.size());
+            }
+            slots.add(routeBuffer);
+            return slots.size() - 1;
+        }
+    }
+
+    // Маршрут уже записан в слот; публикуем его, если он всё ещё дешевле текущего
+    boolean publish(int slot, long cost) {
+        long next = pack(cost, slot);
+        while (true) {
+            long current = packed.get();
+            if (cost >= current >>> SLOT_BITS) return false;
+            if (packed.compareAndSet(current, next)) return true;
+        }
+    }
+
+    int[] route() {
+        long slot = packed.get() & NO_ROUTE;
+        if (slot == NO_ROUTE) return null;
+        synchronized (slots) {
+            return slots.get((int) slot);
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Разовый перевод архива с JSON-матрицей в бинарный формат MatrixFile:
+ * java -jar worker-task.jar data.zip data-bin.zip
+ */
+public class MatrixConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: java -jar worker-task.jar <source.zip> <target.zip>");
+            return;
+        }
+
+        Path source = Path.of(args[0]);
+        Path target = Path.of(args[1]);
+        DistanceMatrix matrix = MatrixFile.open(source);
+
+        int[][] rows = new int[matrix.size()][matrix.size()];
+        for (int from = 0; from < matrix.size(); from++) {
+            for (int to = 0; to < matrix.size(); to++) {
+                rows[from][to] = matrix.cost(from, to);
+            }
+        }
+
+        try (OutputStream os = Files.newOutputStream(target)) {
+            MatrixFile.write(rows, os);
+        }
+        System.out.println("Converted " + matrix.size() + " cities: " + source + " -> " + target
+                + " (" + Files.size(target) + " bytes)");
+    }
+
+}
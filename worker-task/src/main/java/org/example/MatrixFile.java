@@ -0,0 +1,173 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Enumeration;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Бинарный формат матрицы в архиве задачи - запись matrix.bin:
+ * заголовок из 16 байт (магическое число GMTX, версия, размер ячейки 2 или 4 байта, число городов, резерв)
+ * и тело по строкам, всё little-endian. Конвертер кладёт запись первой и без сжатия, поэтому воркер
+ * отображает её в память прямо из архива через FileChannel.map, ничего не распаковывая и не разбирая.
+ */
+public final class MatrixFile {
+
+    public static final String ENTRY_NAME = "matrix.bin";
+    public static final int MAGIC = 0x58544D47;
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    // Бит 3 флагов: размеры записаны после данных, в локальном заголовке нули
+    private static final int DATA_DESCRIPTOR_FLAG = 1 << 3;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MatrixFile() {}
+
+    public static DistanceMatrix open(Path archivePath) throws IOException {
+        DistanceMatrix mapped = mapStoredEntry(archivePath);
+        if (mapped != null) {
+            return mapped;
+        }
+
+        try (ZipFile zipFile = new ZipFile(archivePath.toFile())) {
+            ZipEntry binaryEntry = zipFile.getEntry(ENTRY_NAME);
+            if (binaryEntry != null) {
+                // Сжатую запись отобразить нельзя, поэтому читаем её в буфер вне кучи
+                try (InputStream is = zipFile.getInputStream(binaryEntry)) {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(binaryEntry.getSize()));
+                    byte[] chunk = new byte[64 * 1024];
+                    int read;
+                    while ((read = is.read(chunk)) != -1) {
+                        buffer.put(chunk, 0, read);
+                    }
+                    return fromBuffer(buffer.flip());
+                }
+            }
+
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().endsWith(".json")) {
+                    try (InputStream is = zipFile.getInputStream(entry)) {
+                        return DistanceMatrix.of(objectMapper.readValue(is, int[][].class));
+                    }
+                }
+            }
+        }
+        throw new IOException("Matrix not found in archive at " + archivePath);
+    }
+
+    // Заголовок первой записи zip разбирается вручную: ZipFile не отдаёт смещение данных
+    private static DistanceMatrix mapStoredEntry(Path archivePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(archivePath, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + ENTRY_NAME.length()).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) != -1) {}
+            if (header.hasRemaining() || header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+                return null;
+            }
+
+            boolean stored = header.getShort(8) == ZipEntry.STORED;
+            boolean sizesInHeader = (header.getShort(6) & DATA_DESCRIPTOR_FLAG) == 0;
+            long size = Integer.toUnsignedLong(header.getInt(22));
+            int nameLength = Short.toUnsignedInt(header.getShort(26));
+            int extraLength = Short.toUnsignedInt(header.getShort(28));
+            String name = new String(header.array(), LOCAL_HEADER_SIZE, Math.min(nameLength, ENTRY_NAME.length()),
+                    StandardCharsets.UTF_8);
+            // Без размеров в заголовке отобразить нечего - такую запись читает ZipFile по центральному каталогу
+            if (!stored || !sizesInHeader || size < HEADER_SIZE || nameLength != ENTRY_NAME.length()
+                    || !ENTRY_NAME.equals(name) || Integer.toUnsignedLong(header.getInt(18)) != size) {
+                return null;
+            }
+
+            long dataOffset = LOCAL_HEADER_SIZE + nameLength + extraLength;
+            return fromBuffer(channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, size));
+        }
+    }
+
+    private static DistanceMatrix fromBuffer(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a matrix file");
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported matrix file version " + buffer.getShort(4));
+        }
+        int cellBytes = buffer.getShort(6);
+        if (cellBytes != Short.BYTES && cellBytes != Integer.BYTES) {
+            throw new IOException("Unsupported cell size " + cellBytes);
+        }
+        int size = buffer.getInt(8);
+        return new DistanceMatrix(size, cellBytes, buffer.position(HEADER_SIZE).slice());
+    }
+
+    /**
+     * Записывает матрицу в архив первой несжатой записью. Ячейки int16 выбираются, если все стоимости
+     * помещаются в 0..65535, иначе int32.
+     */
+    public static void write(int[][] matrix, OutputStream target) throws IOException {
+        int cellBytes = Short.BYTES;
+        for (int[] row : matrix) {
+            if (row.length != matrix.length) {
+                throw new IllegalArgumentException("Matrix is not square");
+            }
+            for (int cost : row) {
+                if (cost < 0 || cost > 0xFFFF) {
+                    cellBytes = Integer.BYTES;
+                }
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putShort(VERSION).putShort((short) cellBytes).putInt(matrix.length).putInt(0);
+
+        // Для записи без сжатия zip требует размер и CRC заранее, поэтому тело проходим дважды
+        CRC32 crc = new CRC32();
+        crc.update(header.array());
+        for (int[] row : matrix) {
+            crc.update(encodeRow(row, cellBytes));
+        }
+
+        ZipEntry entry = new ZipEntry(ENTRY_NAME);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(HEADER_SIZE + (long) matrix.length * matrix.length * cellBytes);
+        entry.setCompressedSize(entry.getSize());
+        entry.setCrc(crc.getValue());
+
+        try (ZipOutputStream zip = new ZipOutputStream(target)) {
+            zip.putNextEntry(entry);
+            zip.write(header.array());
+            for (int[] row : matrix) {
+                zip.write(encodeRow(row, cellBytes));
+            }
+            zip.closeEntry();
+        }
+    }
+
+    private static byte[] encodeRow(int[] row, int cellBytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(row.length * cellBytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int cost : row) {
+            if (cellBytes == Short.BYTES) {
+                buffer.putShort((short) cost);
+            } else {
+                buffer.putInt(cost);
+            }
+        }
+        return buffer.array();
+    }
+
+}
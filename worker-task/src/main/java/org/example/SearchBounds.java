@@ -0,0 +1,97 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Данные для перебора, которые зависят только от матрицы: самое дешёвое входящее ребро каждого города
+ * и соседи каждого города по возрастанию стоимости ребра (плоско: соседи города c лежат с индекса
+ * c * size, их neighbourCount[c] штук). Считаются один раз на матрицу и разделяются всеми задачами воркера.
+ * <p>
+ * Память на таблицы ограничена явно. Пока в матрице не больше HEAP_TABLE_CELLS ячеек (2048 городов),
+ * стоимости и соседи копируются в int[] в куче, это не больше 32 МБ и самый быстрый доступ. Для больших
+ * матриц стоимости читаются прямо из DistanceMatrix вне кучи, а соседи лежат в буфере вне кучи по 2 байта
+ * на номер (номер города всегда меньше 65536: матрица умещается в один ByteBuffer), в куче остаются
+ * только массивы длины size. Перебор на таком пути примерно на треть медленнее.
+ */
+final class SearchBounds {
+
+    // В город без входящих рёбер путь может только начинаться; сумма таких значений не переполняет long
+    static final long UNREACHABLE = Long.MAX_VALUE / (1L << 32);
+
+    private static final Map<DistanceMatrix, SearchBounds> cache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    final int size;
+    final long[] minIncoming;
+    final int[] neighbourCount;
+    private final DistanceMatrix matrix;
+    // Заполнены либо таблицы в куче, либо буфер соседей вне кучи; остальное null
+    private final int[] costTable;
+    private final int[] neighbourTable;
+    private final ByteBuffer neighbours;
+
+    private static final long HEAP_TABLE_CELLS = 1 << 22;
+
+    private SearchBounds(DistanceMatrix matrix) {
+        this.matrix = matrix;
+        size = matrix.size();
+        if ((long) size * size * Character.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Matrix of " + size + " cities is too large for neighbour lists");
+        }
+        minIncoming = new long[size];
+        Arrays.fill(minIncoming, UNREACHABLE);
+        boolean onHeap = (long) size * size <= HEAP_TABLE_CELLS;
+        neighbours = onHeap ? null : ByteBuffer.allocateDirect(size * size * Character.BYTES).order(ByteOrder.nativeOrder());
+        costTable = onHeap ? new int[size * size] : null;
+        neighbourTable = onHeap ? new int[size * size] : null;
+        neighbourCount = new int[size];
+
+        // Строка сортируется упакованными (стоимость, город): один временный массив на строку, без Integer
+        long[] row = new long[size];
+        for (int from = 0; from < size; from++) {
+            int count = 0;
+            for (int to = 0; to < size; to++) {
+                int cost = matrix.cost(from, to);
+                if (onHeap) costTable[from * size + to] = cost;
+                if (to == from || cost <= 0) continue;
+                row[count++] = (long) cost << 32 | to;
+                minIncoming[to] = Math.min(minIncoming[to], cost);
+            }
+            Arrays.sort(row, 0, count);
+            for (int i = 0; i < count; i++) {
+                if (onHeap) neighbourTable[from * size + i] = (int) row[i];
+                else neighbours.putChar((from * size + i) * Character.BYTES, (char) row[i]);
+            }
+            neighbourCount[from] = count;
+        }
+    }
+
+    static SearchBounds of(DistanceMatrix matrix) {
+        return cache.computeIfAbsent(matrix, SearchBounds::new);
+    }
+
+    // index - позиция в плоской таблице, from * size + to
+    int cost(int index) {
+        return costTable != null ? costTable[index] : matrix.cost(index);
+    }
+
+    // index - позиция в списках соседей, c * size + i для i-го по дешевизне соседа города c
+    int neighbour(int index) {
+        return neighbourTable != null ? neighbourTable[index] : neighbours.getChar(index * Character.BYTES);
+    }
+
+    // Нижняя граница для оставшейся части пути: в каждый непосещённый город придётся войти хотя бы
+    // по самому дешёвому входящему ребру
+    long remainingFrom(int startCity) {
+        long sum = 0;
+        for (int city = 0; city < size; city++) {
+            if (city != startCity) sum += minIncoming[city];
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,180 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Последовательный перебор продолжений одного префикса пути (или жадный маршрут из стартового города). Путь - стек int[], посещённые города - битовая маска
+ * (один long до 64 городов, иначе long[]), стоимости и соседи читаются из SearchBounds по плоскому индексу; всё выделяется
+ * один раз при создании, на узел перебора не выделяется ничего. Ядро принадлежит одному потоку
+ * и переиспользуется для всех его префиксов, см. SearchKernels.
+ */
+final class SearchKernel {
+
+    // Признак отмены опрашивается не на каждом узле перебора, а раз в CANCEL_CHECK_MASK + 1 узлов
+    private static final int CANCEL_CHECK_MASK = 1023;
+
+    private final SearchBounds bounds;
+    private final Incumbent incumbent;
+    private final int slot;
+    private final BooleanSupplier cancelled;
+
+    private final int[] path;
+    private final int[] best;
+    private final long[] visited;
+    private int visitedNodes;
+    private boolean stopped;
+
+    SearchKernel(SearchBounds bounds, Incumbent incumbent, BooleanSupplier cancelled) {
+        this.bounds = bounds;
+        this.incumbent = incumbent;
+        this.cancelled = cancelled;
+        this.path = new int[bounds.size];
+        this.best = new int[bounds.size];
+        this.visited = new long[(bounds.size + Long.SIZE - 1) / Long.SIZE];
+        this.slot = incumbent.register(best);
+    }
+
+    // Жадный маршрут: из каждого города - в самого дешёвого непосещённого соседа
+    void seedNearestNeighbour(int startCity) {
+        reset(startCity);
+        long cost = 0;
+        int current = startCity;
+        for (int depth = 1; depth < bounds.size; depth++) {
+            int next = -1;
+            int row = current * bounds.size;
+            for (int i = row, last = row + bounds.neighbourCount[current]; i < last; i++) {
+                if (!isVisited(bounds.neighbour(i))) {
+                    next = bounds.neighbour(i);
+                    break;
+                }
+            }
+            if (next < 0) {
+                return;
+            }
+            cost += bounds.cost(row + next);
+            visit(next);
+            path[depth] = next;
+            current = next;
+        }
+        offer(cost);
+    }
+
+    // prefix начинается со стартового города; cost и remaining уже посчитаны для него
+    void search(int[] prefix, long cost, long remaining) {
+        if (cancelled.getAsBoolean() || cost + remaining >= incumbent.cost()) {
+            return;
+        }
+        int startCity = prefix[0];
+        reset(startCity);
+        long visitedMask = 1L << startCity;
+        for (int depth = 1; depth < prefix.length; depth++) {
+            path[depth] = prefix[depth];
+            visit(prefix[depth]);
+            visitedMask |= 1L << prefix[depth];
+        }
+
+        int current = prefix[prefix.length - 1];
+        if (bounds.size <= Long.SIZE) {
+            expandSmall(current, prefix.length, cost, remaining, visitedMask);
+        } else {
+            expand(current, prefix.length, cost, remaining);
+        }
+    }
+
+    private void reset(int startCity) {
+        Arrays.fill(visited, 0);
+        path[0] = startCity;
+        visit(startCity);
+    }
+
+    // remaining - сумма самых дешёвых входящих рёбер непосещённых городов; вместе с cost это
+    // нижняя граница любого продолжения пути, и ветка отсекается, если она не дешевле лучшего маршрута.
+    // Граница из Incumbent перечитывается только после спуска в дочернюю ветку, где она могла измениться
+    private void expand(int current, int depth, long cost, long remaining) {
+        if (shouldStop()) {
+            return;
+        }
+        if (depth == bounds.size) {
+            offer(cost);
+            return;
+        }
+
+        int row = current * bounds.size;
+        long limit = incumbent.cost();
+        for (int i = row, last = row + bounds.neighbourCount[current]; i < last; i++) {
+            int next = bounds.neighbour(i);
+            if (isVisited(next)) {
+                continue;
+            }
+            long nextCost = cost + bounds.cost(row + next);
+            long nextRemaining = remaining - bounds.minIncoming[next];
+            if (nextCost + nextRemaining >= limit) {
+                continue;
+            }
+
+            visit(next);
+            path[depth] = next;
+            expand(next, depth + 1, nextCost, nextRemaining);
+            unvisit(next);
+            limit = incumbent.cost();
+        }
+    }
+
+    // То же для матриц до 64 городов: маска посещённых целиком в одном long и передаётся по значению
+    private void expandSmall(int current, int depth, long cost, long remaining, long visitedMask) {
+        if (shouldStop()) {
+            return;
+        }
+        if (depth == bounds.size) {
+            offer(cost);
+            return;
+        }
+
+        int row = current * bounds.size;
+        long limit = incumbent.cost();
+        for (int i = row, last = row + bounds.neighbourCount[current]; i < last; i++) {
+            int next = bounds.neighbour(i);
+            if ((visitedMask & 1L << next) != 0) {
+                continue;
+            }
+            long nextCost = cost + bounds.cost(row + next);
+            long nextRemaining = remaining - bounds.minIncoming[next];
+            if (nextCost + nextRemaining >= limit) {
+                continue;
+            }
+
+            path[depth] = next;
+            expandSmall(next, depth + 1, nextCost, nextRemaining, visitedMask | 1L << next);
+            limit = incumbent.cost();
+        }
+    }
+
+    private void offer(long cost) {
+        if (cost >= incumbent.cost()) {
+            return;
+        }
+        System.arraycopy(path, 0, best, 0, path.length);
+        incumbent.publish(slot, cost);
+    }
+
+    private boolean isVisited(int city) {
+        return (visited[city >>> 6] & 1L << city) != 0;
+    }
+
+    private void visit(int city) {
+        visited[city >>> 6] |= 1L << city;
+    }
+
+    private void unvisit(int city) {
+        visited[city >>> 6] &= ~(1L << city);
+    }
+
+    private boolean shouldStop() {
+        if (!stopped && (++visitedNodes & CANCEL_CHECK_MASK) == 0) {
+            stopped = cancelled.getAsBoolean();
+        }
+        return stopped;
+    }
+
+}
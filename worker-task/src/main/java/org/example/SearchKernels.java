@@ -0,0 +1,31 @@
+package org.example;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Общее состояние одного вызова поиска: границы, лучший маршрут, признак отмены и ядра перебора.
+ * Ядро одно на поток, который до него дошёл, и переиспользуется всеми листьями, выпавшими этому потоку,
+ * поэтому число ядер и слотов в Incumbent ограничено числом потоков, а не числом листьев дерева.
+ */
+final class SearchKernels {
+
+    final SearchBounds bounds;
+    final Incumbent incumbent;
+    final BooleanSupplier cancelled;
+    private final Map<Thread, SearchKernel> kernels = new ConcurrentHashMap<>();
+
+    SearchKernels(SearchBounds bounds, Incumbent incumbent, BooleanSupplier cancelled) {
+        this.bounds = bounds;
+        this.incumbent = incumbent;
+        this.cancelled = cancelled;
+    }
+
+    // Ядро читает и пишет только поток-владелец, поэтому выдавать его другому потоку нельзя
+    SearchKernel forCurrentThread() {
+        return kernels.computeIfAbsent(Thread.currentThread(),
+                thread -> new SearchKernel(bounds, incumbent, cancelled));
+    }
+
+}
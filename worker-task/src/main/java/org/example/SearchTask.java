@@ -0,0 +1,77 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Узел дерева перебора на первых уровнях: для каждого допустимого продолжения префикса порождается
+ * подзадача, пока не пройдено splitLevels уровней, дальше префикс перебирается последовательно в SearchKernel своего потока.
+ * Так даже задача из одного стартового города даёт достаточно подзадач, чтобы занять все ядра,
+ * а простаивающие потоки пула забирают их себе.
+ */
+final class SearchTask extends RecursiveAction {
+
+    private final SearchKernels kernels;
+    private final SearchBounds bounds;
+    private final Incumbent incumbent;
+    private final int[] prefix;
+    private final long cost;
+    private final long remaining;
+    private final int splitLevels;
+
+    SearchTask(SearchKernels kernels, int[] prefix, long cost, long remaining, int splitLevels) {
+        this.kernels = kernels;
+        this.bounds = kernels.bounds;
+        this.incumbent = kernels.incumbent;
+        this.prefix = prefix;
+        this.cost = cost;
+        this.remaining = remaining;
+        this.splitLevels = splitLevels;
+    }
+
+    static SearchTask root(SearchKernels kernels, int startCity, int splitLevels) {
+        return new SearchTask(kernels, new int[]{startCity}, 0,
+                kernels.bounds.remainingFrom(startCity), splitLevels);
+    }
+
+    @Override
+    protected void compute() {
+        if (kernels.cancelled.getAsBoolean() || cost + remaining >= incumbent.cost()) {
+            return;
+        }
+        if (splitLevels == 0 || prefix.length >= bounds.size - 1) {
+            kernels.forCurrentThread().search(prefix, cost, remaining);
+            return;
+        }
+
+        int current = prefix[prefix.length - 1];
+        int row = current * bounds.size;
+        List<SearchTask> children = new ArrayList<>();
+        for (int i = row, last = row + bounds.neighbourCount[current]; i < last; i++) {
+            int next = bounds.neighbour(i);
+            if (contains(next)) {
+                continue;
+            }
+            long nextCost = cost + bounds.cost(row + next);
+            long nextRemaining = remaining - bounds.minIncoming[next];
+            if (nextCost + nextRemaining >= incumbent.cost()) {
+                continue;
+            }
+
+            int[] childPrefix = Arrays.copyOf(prefix, prefix.length + 1);
+            childPrefix[prefix.length] = next;
+            children.add(new SearchTask(kernels, childPrefix, nextCost, nextRemaining, splitLevels - 1));
+        }
+        invokeAll(children);
+    }
+
+    private boolean contains(int city) {
+        for (int visited : prefix) {
+            if (visited == city) return true;
+        }
+        return false;
+    }
+
+}
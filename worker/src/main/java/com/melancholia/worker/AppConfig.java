@@ -1,15 +1,22 @@
 package com.melancholia.worker;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 public class AppConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public ThreadPoolTaskExecutor solveExecutor(@Value("${solve-executor.threads}") int threads,
+                                                @Value("${worker.prefetch-depth}") int prefetchDepth) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(prefetchDepth);
+        executor.setThreadNamePrefix("solve-");
+        return executor;
     }
 
 }
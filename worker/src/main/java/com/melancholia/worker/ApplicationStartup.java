@@ -18,7 +18,8 @@ public class ApplicationStartup {
     private RestApiClient restApiClient;
     @Value("${server.port}")
     private int port;
-    private static final String managerAddress = "http://localhost:8000";
+    @Value("${manager.address}")
+    private String managerAddress;
 
 
     @EventListener(ApplicationReadyEvent.class)
@@ -0,0 +1,23 @@
+package com.melancholia.worker;
+
+import java.util.List;
+
+public class BlobFetch {
+
+    private final long size;
+    private final List<String> sources;
+
+    public BlobFetch(long size, List<String> sources) {
+        this.size = size;
+        this.sources = sources;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public List<String> getSources() {
+        return sources;
+    }
+
+}
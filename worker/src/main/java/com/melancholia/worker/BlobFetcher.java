@@ -0,0 +1,111 @@
+package com.melancholia.worker;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Скачивает файл бандла у других воркеров: файл делится на диапазоны байт по числу источников,
+ * диапазоны качаются параллельно и пишутся в один файл по своим смещениям.
+ */
+@Component
+public class BlobFetcher {
+
+    @Autowired
+    private RestTemplate restTemplate;
+    @Autowired
+    private BundleCache bundleCache;
+    private final ExecutorService fetchExecutor = Executors.newCachedThreadPool();
+
+    public void fetch(String hash, BlobFetch blobFetch) throws IOException {
+        List<String> sources = blobFetch.getSources();
+        if (sources == null || sources.isEmpty()) {
+            throw new IllegalArgumentException("Не указаны источники для файла " + hash);
+        }
+
+        long size = blobFetch.getSize();
+        long chunkSize = Math.max(1, (size + sources.size() - 1) / sources.size());
+        Path partFile = bundleCache.createPartFile(hash);
+
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+            List<CompletableFuture<Void>> chunks = new ArrayList<>();
+            int index = 0;
+            for (long from = 0; from < size; from += chunkSize, index++) {
+                long chunkFrom = from;
+                long chunkTo = Math.min(size, from + chunkSize);
+                int firstSource = index;
+                chunks.add(CompletableFuture.runAsync(
+                        () -> fetchChunk(hash, sources, firstSource, channel, chunkFrom, chunkTo), fetchExecutor));
+            }
+            CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            Files.deleteIfExists(partFile);
+            throw new IOException("Не удалось скачать файл " + hash + " у соседей: " + e.getCause().getMessage(), e);
+        }
+
+        try {
+            bundleCache.commit(hash, partFile);
+        } finally {
+            Files.deleteIfExists(partFile);
+        }
+    }
+
+    // Если источник не ответил, тот же диапазон пробуем у следующего
+    private void fetchChunk(String hash, List<String> sources, int firstSource, FileChannel channel, long from, long to) {
+        RuntimeException lastError = null;
+        for (int attempt = 0; attempt < sources.size(); attempt++) {
+            String source = sources.get((firstSource + attempt) % sources.size());
+            try {
+                downloadRange(String.format("%s/blobs/%s", source, hash), channel, from, to);
+                return;
+            } catch (RuntimeException e) {
+                System.out.println("Не удалось получить диапазон " + from + "-" + to + " у " + source + ": " + e.getMessage());
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    private void downloadRange(String url, FileChannel channel, long from, long to) {
+        restTemplate.execute(url, HttpMethod.GET,
+                request -> request.getHeaders().setRange(List.of(HttpRange.createByteRange(from, to - 1))),
+                response -> {
+                    if (response.getStatusCode() != HttpStatus.PARTIAL_CONTENT) {
+                        throw new IOException("Источник не поддерживает запросы по диапазону: " + response.getStatusCode());
+                    }
+                    long position = from;
+                    byte[] buffer = new byte[64 * 1024];
+                    try (InputStream is = response.getBody()) {
+                        int read;
+                        while ((read = is.read(buffer)) != -1) {
+                            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                            while (chunk.hasRemaining()) {
+                                position += channel.write(chunk, position);
+                            }
+                        }
+                    }
+                    if (position != to) {
+                        throw new IOException("Получено " + (position - from) + " байт вместо " + (to - from));
+                    }
+                    return null;
+                });
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.melancholia.worker;
+
+import java.util.List;
+
+public class Bundle {
+
+    private final String jarHash;
+    private final String manifestHash;
+    private final String archiveHash;
+
+    public Bundle(String jarHash, String manifestHash, String archiveHash) {
+        this.jarHash = jarHash;
+        this.manifestHash = manifestHash;
+        this.archiveHash = archiveHash;
+    }
+
+    public String getJarHash() {
+        return jarHash;
+    }
+
+    public String getManifestHash() {
+        return manifestHash;
+    }
+
+    public String getArchiveHash() {
+        return archiveHash;
+    }
+
+    public List<String> hashes() {
+        return List.of(jarHash, manifestHash, archiveHash);
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.melancholia.worker;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Локальное хранилище файлов задачи, адресуемых по SHA-256 содержимого.
+ * Переживает /reset, поэтому повторная инициализация тем же бандлом обходится без передачи файлов.
+ */
+@Component
+public class BundleCache {
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${bundle-cache-path}")
+    private String BUNDLE_CACHE_PATH;
+
+    public Path blobPath(String hash) {
+        if (!SHA256_HEX.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Некорректный хеш " + hash);
+        }
+        return Paths.get(BUNDLE_CACHE_PATH, hash);
+    }
+
+    public boolean contains(String hash) {
+        return Files.isRegularFile(blobPath(hash));
+    }
+
+    public List<String> missing(Bundle bundle) {
+        return bundle.hashes().stream().distinct().filter(hash -> !contains(hash)).toList();
+    }
+
+    public void store(String hash, InputStream content) throws IOException {
+        Path temp = createPartFile(hash);
+        try {
+            MessageDigest digest = sha256Digest();
+            try (OutputStream os = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    os.write(buffer, 0, read);
+                }
+            }
+            commit(hash, temp, HexFormat.of().formatHex(digest.digest()));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Path createPartFile(String hash) throws IOException {
+        Path target = blobPath(hash);
+        Files.createDirectories(target.getParent());
+        return Files.createTempFile(target.getParent(), hash, ".part");
+    }
+
+    // Файл, собранный по частям, хешируется заново целиком перед переносом в кеш
+    public void commit(String hash, Path partFile) throws IOException {
+        commit(hash, partFile, sha256(partFile));
+    }
+
+    private void commit(String hash, Path partFile, String actual) throws IOException {
+        if (!actual.equals(hash)) {
+            throw new IOException("Хеш полученного файла " + actual + " не совпадает с ожидаемым " + hash);
+        }
+        Files.move(partFile, blobPath(hash), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest = sha256Digest();
+        try (InputStream is = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+}
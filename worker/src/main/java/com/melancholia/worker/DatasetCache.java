@@ -0,0 +1,37 @@
+package com.melancholia.worker;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Набор данных текущего бандла, один раз разобранный методом @Load плагина и общий для всех задач.
+ * Задачи получают его только на чтение. Сбрасывается на /reset и при инициализации другим бандлом.
+ */
+@Component
+public class DatasetCache {
+
+    // Бандл, которому принадлежит набор данных; защищено блокировкой this
+    private String bundleKey = null;
+    private Object dataset = null;
+
+    public synchronized Object get(Bundle bundle, PluginMethod loadMethod, Path archivePath) {
+        String key = bundle.getJarHash() + ":" + bundle.getArchiveHash();
+        if (key.equals(bundleKey)) {
+            return dataset;
+        }
+        evict();
+
+        long loadStart = System.nanoTime();
+        dataset = loadMethod.load(archivePath);
+        bundleKey = key;
+        System.out.println("Набор данных загружен за " + (System.nanoTime() - loadStart) / 1_000_000 + " мс");
+        return dataset;
+    }
+
+    public synchronized void evict() {
+        bundleKey = null;
+        dataset = null;
+    }
+
+}
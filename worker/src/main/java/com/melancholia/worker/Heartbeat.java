@@ -0,0 +1,27 @@
+package com.melancholia.worker;
+
+public class Heartbeat {
+
+    private final String host;
+    private final int port;
+    private final WorkerState state;
+
+    public Heartbeat(Worker worker, WorkerState state) {
+        this.host = worker.getHost();
+        this.port = worker.getPort();
+        this.state = state;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public WorkerState getState() {
+        return state;
+    }
+
+}
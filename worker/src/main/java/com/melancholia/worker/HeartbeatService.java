@@ -0,0 +1,75 @@
+package com.melancholia.worker;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Воркер сам сообщает менеджеру, что он жив: раз в heartbeat-interval-ms и сразу,
+ * как только меняется статус или глубина предвыборки. Проверка изменений локальная
+ * и ничего не стоит, по сети уходит только сам heartbeat.
+ * Heartbeat идёт через RestTemplate напрямую, без RestApiClient: тот пишет в лог каждый запрос,
+ * а heartbeat уходит несколько раз в секунду. В лог попадают только смена статуса и потеря связи.
+ */
+@Component
+public class HeartbeatService {
+
+    @Autowired
+    private RestTemplate restTemplate;
+    @Autowired
+    private WorkerHealth workerHealth;
+    @Value("${manager.address}")
+    private String managerAddress;
+    @Value("${manager.heartbeat-interval-ms}")
+    private long heartbeatIntervalMs;
+    @Value("${server.port}")
+    private int port;
+
+    private Worker self;
+    private WorkerStatus lastStatus;
+    private int lastPrefetchDepth;
+    private long lastSentAt;
+    private boolean managerReachable = true;
+
+    @PostConstruct
+    public void init() throws UnknownHostException {
+        self = new Worker(InetAddress.getLocalHost().getHostAddress(), port);
+    }
+
+    @Scheduled(fixedDelay = 200)
+    public void beat() {
+        WorkerState state = workerHealth.getWorkerState();
+        boolean changed = state.getStatus() != lastStatus || state.getPrefetchDepth() != lastPrefetchDepth;
+        // Пока менеджер недоступен, изменения не ускоряют повторные попытки
+        boolean due = System.currentTimeMillis() - lastSentAt >= heartbeatIntervalMs || (changed && managerReachable);
+        if (!due) return;
+
+        String url = String.format("%s/%s", managerAddress, "worker-heartbeat");
+        try {
+            restTemplate.postForEntity(url, new Heartbeat(self, state), ApiBody.class);
+            if (state.getStatus() != lastStatus) {
+                System.out.println("Менеджер получил статус воркера: " + state.getStatus());
+            }
+            lastStatus = state.getStatus();
+            lastPrefetchDepth = state.getPrefetchDepth();
+            if (!managerReachable) {
+                System.out.println("Связь с менеджером восстановлена");
+                managerReachable = true;
+            }
+        } catch (Exception e) {
+            // При недоступном менеджере пишем в лог один раз, а не на каждый heartbeat
+            if (managerReachable) {
+                System.out.println("Не удалось отправить heartbeat менеджеру: " + e.getMessage());
+                managerReachable = false;
+            }
+        }
+        lastSentAt = System.currentTimeMillis();
+    }
+
+}
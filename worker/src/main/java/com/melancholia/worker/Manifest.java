@@ -4,6 +4,8 @@ public class Manifest {
 
     private String className;
     private String annotationName;
+    // Необязательная аннотация метода, который один раз разбирает архив с данными
+    private String annotationLoadName;
 
     public Manifest() {}
 
@@ -20,4 +22,8 @@ public class Manifest {
         return annotationName;
     }
 
+    public String getAnnotationLoadName() {
+        return annotationLoadName;
+    }
+
 }
@@ -0,0 +1,81 @@
+package com.melancholia.worker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Метод плагина, разрешённый один раз при инициализации: проверки доступа, создание экземпляра
+ * и приведение сигнатуры выполняются здесь, а не на каждую задачу.
+ * Метод @Solve приводится к (Object, int, int, BooleanSupplier, long)Object. Первый аргумент - набор данных,
+ * разобранный методом @Load, или путь к архиву, если плагин его не объявил. Затем границы задачи,
+ * признак отмены и лучшая стоимость, уже известная дистрибьютору (Long.MAX_VALUE, если её нет).
+ * Хвостовые аргументы, которых плагин не объявил, отбрасываются, так что старые сигнатуры
+ * (Path, int, int) и (Object, int, int, BooleanSupplier) продолжают работать. Метод @Load приводится к (Path)Object.
+ */
+public class PluginMethod {
+
+    private static final MethodType SOLVE_CALL = MethodType.methodType(Object.class, Object.class, int.class, int.class,
+            BooleanSupplier.class, long.class);
+    private static final MethodType LOAD_CALL = MethodType.methodType(Object.class, Path.class);
+
+    private final String name;
+    private final MethodHandle handle;
+
+    private PluginMethod(String name, MethodHandle handle) {
+        this.name = name;
+        this.handle = handle;
+    }
+
+    public static PluginMethod of(Method method) throws ReflectiveOperationException {
+        MethodHandle handle = bind(method);
+        int declared = method.getParameterCount();
+        if (declared < SOLVE_CALL.parameterCount()) {
+            handle = MethodHandles.dropArguments(handle, declared,
+                    SOLVE_CALL.parameterList().subList(declared, SOLVE_CALL.parameterCount()));
+        }
+        return new PluginMethod(method.getName(), handle.asType(SOLVE_CALL));
+    }
+
+    public static PluginMethod loader(Method method) throws ReflectiveOperationException {
+        return new PluginMethod(method.getName(), bind(method).asType(LOAD_CALL));
+    }
+
+    private static MethodHandle bind(Method method) throws ReflectiveOperationException {
+        method.setAccessible(true);
+        MethodHandle handle = MethodHandles.lookup().unreflect(method);
+        if (!Modifier.isStatic(method.getModifiers())) {
+            Constructor<?> constructor = method.getDeclaringClass().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            handle = handle.bindTo(constructor.newInstance());
+        }
+        return handle;
+    }
+
+    // В отличие от invoke ошибка загрузки не глотается: без набора данных воркер не инициализируется
+    public Object load(Path archivePath) {
+        try {
+            return (Object) handle.invokeExact(archivePath);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Ошибка при выполнении метода " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    public Object invoke(Object dataset, int start, int end, BooleanSupplier cancelled, long bound) {
+        try {
+            return (Object) handle.invokeExact(dataset, start, end, cancelled, bound);
+        } catch (CancellationException e) {
+            return null;
+        } catch (Throwable e) {
+            System.out.println("Ошибка при выполнении метода " + name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+}
@@ -1,30 +1,44 @@
 package com.melancholia.worker;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class ReflectionUtils {
     public static URLClassLoader classLoader;
 
-    public static List<Method> getAnnotatedMethodsByName(Path jarFilePath, String className, String annotationName) throws Exception {
-        List<Method> annotatedMethods = new ArrayList<>();
-
+    // Повторная инициализация тем же jar использует прежний загрузчик, чтобы закэшированный
+    // набор данных и новые методы плагина видели одни и те же классы
+    public static synchronized Class<?> loadClass(Path jarFilePath, String className) throws Exception {
         File jarFile = jarFilePath.toFile();
         URL jarURL = jarFile.toURI().toURL();
-        classLoader = new URLClassLoader(new URL[]{jarURL});
+        if (classLoader == null || !Arrays.asList(classLoader.getURLs()).contains(jarURL)) {
+            close();
+            classLoader = new URLClassLoader(new URL[]{jarURL});
+        }
 
-        Class<?> targetClass = Class.forName(className, true, classLoader);
+        return Class.forName(className, true, classLoader);
+    }
+
+    public static synchronized void close() throws IOException {
+        if (classLoader == null) return;
+        classLoader.close();
+        classLoader = null;
+    }
+
+    public static List<Method> getAnnotatedMethods(Class<?> targetClass, String annotationName) {
+        List<Method> annotatedMethods = new ArrayList<>();
 
         Class<? extends Annotation> annotationClass = null;
         try {
-            annotationClass = (Class<? extends Annotation>) Class.forName(annotationName, true, classLoader);
+            annotationClass = (Class<? extends Annotation>) Class.forName(annotationName, true, targetClass.getClassLoader());
         } catch (ClassNotFoundException e) {
             System.out.println("Класс аннотации не найден: " + annotationName);
             return annotatedMethods;
@@ -41,26 +55,4 @@ public class ReflectionUtils {
         return annotatedMethods;
     }
 
-    public static Object executeMethod(Method method, Object[] args) {
-
-        method.setAccessible(true);
-
-        Object instance = null;
-        if (!java.lang.reflect.Modifier.isStatic(method.getModifiers())) {
-            Class<?> clazz = method.getDeclaringClass();
-            try {
-                instance = clazz.getDeclaredConstructor().newInstance();
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-                System.out.println("Ошибка: " + e.getMessage());
-            }
-        }
-
-        try {
-            return method.invoke(instance, args);
-        } catch (Exception e) {
-            System.out.println("Ошибка при выполнении метода " +  method.getName() +  e.getMessage());
-            return null;
-        }
-    }
-
 }
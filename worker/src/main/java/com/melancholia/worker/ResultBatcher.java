@@ -0,0 +1,159 @@
+package com.melancholia.worker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Копит результаты задач и отправляет их дистрибьютору пачкой: как только набралось
+ * max-size результатов или самый старый ждёт дольше linger-ms. Если дистрибьютор не успевает
+ * сворачивать результаты (503), пачка уходит снова через Retry-After. Отклонённая пачка не
+ * сливается с новыми результатами: она повторяется отдельно, кусками не больше max-size, и у
+ * каждого куска свой срок повтора. Иначе пачка росла бы, пока дистрибьютор перегружен, и
+ * однажды стала бы больше его очереди свёртки, которую он резервирует под пачку целиком.
+ * При обрыве соединения, таймауте или другой ошибке 5xx пачка тоже не теряется: повтор идёт
+ * с растущей задержкой. Иначе задачи из неё остались бы числиться за воркером, и при полной
+ * предвыборке дистрибьютор перестал бы выдавать ему новые. Отбрасывается пачка только при 4xx -
+ * такой запрос не примут и при повторе.
+ */
+@Component
+public class ResultBatcher {
+
+    @Autowired
+    private RestApiClient restApiClient;
+    @Value("${result-batch.max-size}")
+    private int maxBatchSize;
+    @Value("${result-batch.linger-ms}")
+    private long lingerMs;
+
+    // Ключ - адрес обратного вызова, защищено блокировкой this
+    private final Map<String, Batch> batches = new HashMap<>();
+    // Отклонённые куски, ждущие своего срока, защищено блокировкой this
+    private final List<Retry> retries = new ArrayList<>();
+    // Число неудачных отправок подряд по каждому адресу, по нему растёт задержка повтора
+    private final Map<String, Integer> failures = new HashMap<>();
+
+    private static final long DEFAULT_RETRY_AFTER_MS = 1000;
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    private static class Batch {
+        private final List<JsonNode> results = new ArrayList<>();
+        private final long openedAt;
+
+        private Batch(long openedAt) {
+            this.openedAt = openedAt;
+        }
+    }
+
+    private record Retry(String callbackUrl, List<JsonNode> results, long dueAt) {}
+
+    public void add(String callbackUrl, JsonNode result) {
+        List<JsonNode> ready = null;
+        synchronized (this) {
+            Batch batch = batches.computeIfAbsent(callbackUrl, url -> new Batch(System.currentTimeMillis()));
+            batch.results.add(result);
+            if (batch.results.size() >= maxBatchSize) {
+                batches.remove(callbackUrl);
+                ready = batch.results;
+            }
+        }
+        if (ready != null) send(callbackUrl, ready);
+    }
+
+    @Scheduled(fixedDelayString = "${result-batch.linger-ms}")
+    public void flushExpired() {
+        long now = System.currentTimeMillis();
+        flush(now - lingerMs, now);
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        flush(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    private void flush(long openedBefore, long dueBefore) {
+        Map<String, List<JsonNode>> ready = new HashMap<>();
+        List<Retry> due = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Retry> retryIterator = retries.iterator();
+            while (retryIterator.hasNext()) {
+                Retry retry = retryIterator.next();
+                if (retry.dueAt() > dueBefore) continue;
+                due.add(retry);
+                retryIterator.remove();
+            }
+
+            Iterator<Map.Entry<String, Batch>> iterator = batches.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Batch> entry = iterator.next();
+                if (entry.getValue().openedAt > openedBefore) continue;
+                ready.put(entry.getKey(), entry.getValue().results);
+                iterator.remove();
+            }
+        }
+        due.forEach(retry -> send(retry.callbackUrl(), retry.results()));
+        ready.forEach(this::send);
+    }
+
+    private void send(String callbackUrl, List<JsonNode> results) {
+        ObjectNode body = JsonNodeFactory.instance.objectNode();
+        body.putArray("results").addAll(results);
+        try {
+            ApiBody response = restApiClient.postRequest(callbackUrl, body, ApiBody.class);
+            synchronized (this) {
+                failures.remove(callbackUrl);
+            }
+            System.out.println("Отправлено результатов: " + results.size() + ". Ответ: "
+                    + (response == null ? null : response.getMessage()));
+        } catch (HttpServerErrorException.ServiceUnavailable e) {
+            long retryAfterMs = retryAfterMs(e.getResponseHeaders());
+            System.out.println("Дистрибьютор перегружен, повтор отправки через " + retryAfterMs + " мс");
+            requeue(callbackUrl, results, retryAfterMs);
+        } catch (HttpClientErrorException e) {
+            System.out.println("Дистрибьютор отклонил результаты (" + results.size() + "): " + e.getMessage());
+        } catch (Exception e) {
+            long delayMs = backoffMs(callbackUrl);
+            System.out.println("Не удалось отправить результаты (" + results.size() + "): " + e.getMessage()
+                    + ", повтор через " + delayMs + " мс");
+            requeue(callbackUrl, results, delayMs);
+        }
+    }
+
+    private synchronized long backoffMs(String callbackUrl) {
+        int failed = failures.merge(callbackUrl, 1, Integer::sum);
+        return Math.min(MAX_RETRY_DELAY_MS, DEFAULT_RETRY_AFTER_MS << Math.min(failed - 1, 16));
+    }
+
+    // Плановый сброс отправит куски не раньше чем через delayMs
+    private synchronized void requeue(String callbackUrl, List<JsonNode> results, long delayMs) {
+        long dueAt = System.currentTimeMillis() + delayMs;
+        for (int from = 0; from < results.size(); from += maxBatchSize) {
+            int to = Math.min(results.size(), from + maxBatchSize);
+            retries.add(new Retry(callbackUrl, new ArrayList<>(results.subList(from, to)), dueAt));
+        }
+    }
+
+    private static long retryAfterMs(HttpHeaders headers) {
+        String retryAfter = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+        try {
+            return retryAfter == null ? DEFAULT_RETRY_AFTER_MS : Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return DEFAULT_RETRY_AFTER_MS;
+        }
+    }
+
+}
@@ -2,26 +2,26 @@ package com.melancholia.worker;
 
 import org.springframework.stereotype.Service;
 
-import java.lang.reflect.Method;
-import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
 
 @Service
 public class Solver {
 
-    private Method solveMethod = null;
-    private Path zipPath = null;
+    private volatile PluginMethod solveMethod = null;
+    // Разобранный набор данных бандла или путь к архиву, если плагин не объявил @Load
+    private volatile Object dataset = null;
 
-    public void setSolveMethod(Method solveMethod) {
+    public void setSolveMethod(PluginMethod solveMethod) {
         this.solveMethod = solveMethod;
     }
 
-    public void setZipPath(Path zipPath) {
-        this.zipPath = zipPath;
+    public void setDataset(Object dataset) {
+        this.dataset = dataset;
     }
 
-    public Object solve(Task task) {
-        Object[] solveArgs = {zipPath, Integer.valueOf(task.getStart()), Integer.valueOf(task.getEnd())};
-        return ReflectionUtils.executeMethod(solveMethod, solveArgs);
+    public Object solve(Task task, BooleanSupplier cancelled) {
+        long bound = task.getBound() == null ? Long.MAX_VALUE : task.getBound();
+        return solveMethod.invoke(dataset, Integer.parseInt(task.getStart()), Integer.parseInt(task.getEnd()), cancelled, bound);
     }
 
 }
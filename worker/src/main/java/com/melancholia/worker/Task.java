@@ -5,11 +5,16 @@ public class Task {
     private final String start;
     private final String end;
     private final String callbackUrl;
+    private final String worker;
+    // Лучшая стоимость, известная дистрибьютору при выдаче задачи; null - пока неизвестна
+    private final Long bound;
 
-    public Task(String start, String count, String callbackUrl) {
+    public Task(String start, String end, String callbackUrl, String worker, Long bound) {
         this.start = start;
-        this.end = count;
+        this.end = end;
         this.callbackUrl = callbackUrl;
+        this.worker = worker;
+        this.bound = bound;
     }
 
     public String getStart() {
@@ -24,4 +29,16 @@ public class Task {
         return callbackUrl;
     }
 
+    public String getWorker() {
+        return worker;
+    }
+
+    public Long getBound() {
+        return bound;
+    }
+
+    public String key() {
+        return start + ":" + end;
+    }
+
 }
@@ -1,18 +1,18 @@
 package com.melancholia.worker;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.List;
 
 @RestController
 public class WorkerController {
@@ -22,43 +22,48 @@ public class WorkerController {
     @Autowired
     private Solver solverService;
     @Autowired WorkerHealth workerStateService;
-    @Value("${upload-path}")
-    private String UPLOAD_PATH;
+    @Autowired
+    private BundleCache bundleCache;
+    @Autowired
+    private DatasetCache datasetCache;
+    @Autowired
+    private BlobFetcher blobFetcher;
+    @Autowired
+    private PoolingHttpClientConnectionManager connectionManager;
 
     public static final ObjectMapper mapper = new ObjectMapper();
 
     @PostMapping("/init")
-    public ResponseEntity<ApiBody> init(@RequestPart("jarFile") MultipartFile jarFile,
-                                        @RequestPart("archiveFile") MultipartFile archiveFile,
-                                        @RequestPart("jsonData") MultipartFile jsonData){
-
-        Path uploadDir = Paths.get(UPLOAD_PATH);
-
+    public ResponseEntity<ApiBody> init(@RequestBody Bundle bundle) {
         try {
-            if (!Files.exists(uploadDir)) {
-                Files.createDirectories(uploadDir);
+            List<String> missing = bundleCache.missing(bundle);
+            if (!missing.isEmpty()) {
+                ApiBody response = new ApiBody("Не хватает файлов", HttpStatus.OK.value(), missing);
+                return new ResponseEntity<>(response, HttpStatus.OK);
             }
 
-            Path jarFilePath = uploadDir.resolve(jarFile.getOriginalFilename());
-            Files.copy(jarFile.getInputStream(), jarFilePath, StandardCopyOption.REPLACE_EXISTING);
+            Path jarFilePath = bundleCache.blobPath(bundle.getJarHash());
+            Manifest manifest = mapper.readValue(bundleCache.blobPath(bundle.getManifestHash()).toFile(), Manifest.class);
 
-            Path archiveFilePath = uploadDir.resolve(archiveFile.getOriginalFilename());
-            Files.copy(archiveFile.getInputStream(), archiveFilePath, StandardCopyOption.REPLACE_EXISTING);
+            Class<?> pluginClass = ReflectionUtils.loadClass(jarFilePath, manifest.getClassName());
+            Path archivePath = bundleCache.blobPath(bundle.getArchiveHash());
 
-            Path jsonFilePath = uploadDir.resolve(jsonData.getOriginalFilename());
-            Files.copy(jsonData.getInputStream(), jsonFilePath, StandardCopyOption.REPLACE_EXISTING);
-
-            File jsonFile = jsonFilePath.toFile();
-            Manifest manifest = mapper.readValue(jsonFile, Manifest.class);
+            // Архив разбирается один раз на бандл, а не в каждой задаче
+            Object dataset = archivePath;
+            if (manifest.getAnnotationLoadName() != null) {
+                dataset = datasetCache.get(bundle, PluginMethod.loader(ReflectionUtils.getAnnotatedMethods(
+                        pluginClass, manifest.getAnnotationLoadName()).get(0)), archivePath);
+            } else {
+                datasetCache.evict();
+            }
 
-            solverService.setSolveMethod(ReflectionUtils.getAnnotatedMethodsByName(
-                    jarFilePath,
-                    manifest.getClassName(),
-                    manifest.getAnnotationName()).get(0));
-            solverService.setZipPath(archiveFilePath);
+            solverService.setSolveMethod(PluginMethod.of(ReflectionUtils.getAnnotatedMethods(
+                    pluginClass,
+                    manifest.getAnnotationName()).get(0)));
+            solverService.setDataset(dataset);
             workerStateService.setWorkerStatusEnum(WorkerStatus.FREE);
 
-            ApiBody response = new ApiBody("Инициализирован", HttpStatus.OK.value(), null);
+            ApiBody response = new ApiBody("Инициализирован", HttpStatus.OK.value(), List.of());
             return new ResponseEntity<>(response, HttpStatus.OK);
         } catch (Exception e) {
             System.out.println("Ошибка: " + e.getMessage());
@@ -67,21 +72,70 @@ public class WorkerController {
         }
     }
 
+    @PutMapping("/blobs/{hash}")
+    public ResponseEntity<ApiBody> uploadBlob(@PathVariable("hash") String hash, HttpServletRequest request) {
+        try {
+            bundleCache.store(hash, request.getInputStream());
+
+            ApiBody response = new ApiBody("Файл сохранён", HttpStatus.OK.value(), null);
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (Exception e) {
+            System.out.println("Ошибка сохранения файла " + hash + ": " + e.getMessage());
+            ApiBody response = new ApiBody("Ошибка", HttpStatus.BAD_REQUEST.value(), null);
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping("/blobs/{hash}")
+    public ResponseEntity<Resource> downloadBlob(@PathVariable("hash") String hash) {
+        if (!bundleCache.contains(hash)) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new FileSystemResource(bundleCache.blobPath(hash)));
+    }
+
+    @PostMapping("/blobs/{hash}/fetch")
+    public ResponseEntity<ApiBody> fetchBlob(@PathVariable("hash") String hash, @RequestBody BlobFetch blobFetch) {
+        try {
+            if (!bundleCache.contains(hash)) {
+                blobFetcher.fetch(hash, blobFetch);
+            }
+
+            ApiBody response = new ApiBody("Файл получен от соседей", HttpStatus.OK.value(), null);
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (Exception e) {
+            System.out.println("Ошибка получения файла " + hash + " от соседей: " + e.getMessage());
+            ApiBody response = new ApiBody("Ошибка", HttpStatus.BAD_GATEWAY.value(), null);
+            return new ResponseEntity<>(response, HttpStatus.BAD_GATEWAY);
+        }
+    }
+
     @PostMapping("/solve")
     public ResponseEntity<ApiBody> solve(@RequestBody Task task) {
         System.out.println("Задача получена: " + task.getStart() + ":" + task.getEnd());
-        System.out.println(task.getStart() + " " + task.getEnd());
-        workerService.solve(task);
+        if (!workerService.submit(task)) {
+            ApiBody response = new ApiBody("Очередь задач заполнена", HttpStatus.SERVICE_UNAVAILABLE.value(), null);
+            return new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        ApiBody response = new ApiBody("Задача принята", HttpStatus.ACCEPTED.value(), null);
+        return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
+    }
 
-        ApiBody response = new ApiBody("Задача получена", HttpStatus.OK.value(), null);
+    @PostMapping("/cancel")
+    public ResponseEntity<ApiBody> cancel(@RequestBody Task task) {
+        String message = workerService.cancel(task) ? "Задача отменена" : "Задача не найдена";
+        ApiBody response = new ApiBody(message, HttpStatus.OK.value(), null);
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
     @GetMapping("/check-state")
     public ResponseEntity<ApiBody> checkWorkerState() {
-        WorkerStatus workerStatus = workerStateService.getWorkerStatusEnum();
+        WorkerState workerState = workerStateService.getWorkerState();
 
-        ApiBody response = new ApiBody("Статус воркера", HttpStatus.OK.value(), workerStatus);
+        ApiBody response = new ApiBody("Статус воркера", HttpStatus.OK.value(), workerState);
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
@@ -93,4 +147,11 @@ public class WorkerController {
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    @GetMapping("/http-pool")
+    public ResponseEntity<ApiBody> httpPoolStats() {
+        ApiBody response = new ApiBody("Статистика пула HTTP-соединений", HttpStatus.OK.value(),
+                HttpClientConfig.poolStats(connectionManager));
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
 }
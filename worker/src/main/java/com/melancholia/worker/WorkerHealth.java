@@ -1,18 +1,47 @@
 package com.melancholia.worker;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Component
 public class WorkerHealth {
 
-    private WorkerStatus workerStatus = WorkerStatus.UNINITIALIZED;
+    private volatile WorkerStatus workerStatus = WorkerStatus.UNINITIALIZED;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    @Value("${worker.prefetch-depth}")
+    private int prefetchDepth;
 
     public WorkerStatus getWorkerStatusEnum() {
-        return workerStatus;
+        if (workerStatus == WorkerStatus.UNINITIALIZED) return workerStatus;
+        return running.get() + queued.get() > 0 ? WorkerStatus.WORKING : WorkerStatus.FREE;
     }
 
     public void setWorkerStatusEnum(WorkerStatus workerStatus) {
         this.workerStatus = workerStatus;
     }
 
+    public WorkerState getWorkerState() {
+        return new WorkerState(getWorkerStatusEnum(), running.get(), queued.get(), prefetchDepth);
+    }
+
+    public void taskQueued() {
+        queued.incrementAndGet();
+    }
+
+    public void taskRejected() {
+        queued.decrementAndGet();
+    }
+
+    public void taskStarted() {
+        queued.decrementAndGet();
+        running.incrementAndGet();
+    }
+
+    public void taskFinished() {
+        running.decrementAndGet();
+    }
+
 }
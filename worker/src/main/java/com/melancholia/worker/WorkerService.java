@@ -6,56 +6,102 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.tomcat.util.http.fileupload.FileUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 @Service
 public class WorkerService {
     @Autowired
-    private RestApiClient restApiClient;
+    private ResultBatcher resultBatcher;
     @Autowired
     private Solver solver;
     @Autowired
+    private DatasetCache datasetCache;
+    @Autowired
     private WorkerHealth workerStateService;
-    @Value("${upload-path}")
-    private String UPLOAD_PATH;
+    @Autowired
+    private ThreadPoolTaskExecutor solveExecutor;
     @Value("${temp-path}")
     private String TEMP_PATH;
     private static final ObjectMapper mapper = new ObjectMapper();
 
-    public void solve(Task task) {
+    // Принятые и ещё не завершённые задачи с признаком отмены, который видит решатель
+    private final Map<String, AtomicBoolean> inFlight = new ConcurrentHashMap<>();
+
+    public boolean submit(Task task) {
+        workerStateService.taskQueued();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        inFlight.put(task.key(), cancelled);
+        try {
+            solveExecutor.execute(() -> solve(task, cancelled));
+            return true;
+        } catch (TaskRejectedException e) {
+            System.out.println("Очередь задач заполнена, задача " + task.getStart() + ":" + task.getEnd() + " отклонена");
+            inFlight.remove(task.key(), cancelled);
+            workerStateService.taskRejected();
+            return false;
+        }
+    }
+
+    // Отменённая задача из очереди не запускается, а уже идущая прерывается решателем
+    public boolean cancel(Task task) {
+        AtomicBoolean cancelled = inFlight.get(task.key());
+        if (cancelled == null) return false;
+        cancelled.set(true);
+        System.out.println("Задача " + task.getStart() + ":" + task.getEnd() + " отменена");
+        return true;
+    }
+
+    private void solve(Task task, AtomicBoolean cancelled) {
+        workerStateService.taskStarted();
         try {
-            workerStateService.setWorkerStatusEnum(WorkerStatus.WORKING);
+            if (cancelled.get()) return;
 
-            ObjectNode result = (ObjectNode) solver.solve(task);
+            long solveStart = System.nanoTime();
+            ObjectNode result = (ObjectNode) solver.solve(task, cancelled::get);
+            long solveTimeMs = (System.nanoTime() - solveStart) / 1_000_000;
+            if (cancelled.get()) {
+                System.out.println("Задача " + task.getStart() + ":" + task.getEnd() + " прервана");
+                return;
+            }
 
             ObjectNode finalResult = JsonNodeFactory.instance.objectNode();
             finalResult.set("result", result);
             finalResult.set("task", mapper.valueToTree(task));
+            finalResult.put("solveTimeMs", solveTimeMs);
 
-            ApiBody response = restApiClient.postRequest(task.getCallbackUrl(), finalResult, ApiBody.class);
+            resultBatcher.add(task.getCallbackUrl(), finalResult);
 
-            System.out.println("Задача " + task.getStart() + ":" + task.getEnd() +
-                    " успешно решена. Ответ: " + response.getMessage());
+            System.out.println("Задача " + task.getStart() + ":" + task.getEnd() + " успешно решена");
 
         } catch (Exception e) {
+            if (cancelled.get()) return;
             System.out.println("Возникла ошибка при выполнении задачи " + task.getStart() + ":" + task.getEnd() +
                     ": " + e.getMessage());
         } finally {
-            workerStateService.setWorkerStatusEnum(WorkerStatus.FREE);
+            inFlight.remove(task.key(), cancelled);
+            workerStateService.taskFinished();
         }
     }
 
+    // Все принятые задачи отменяются сразу: потоки решателя освобождаются, не дожидаясь конца перебора
     public void reset() {
+        inFlight.values().forEach(cancelled -> cancelled.set(true));
+        inFlight.clear();
         workerStateService.setWorkerStatusEnum(WorkerStatus.UNINITIALIZED);
-        solver.setZipPath(null);
+        solver.setDataset(null);
         solver.setSolveMethod(null);
+        datasetCache.evict();
         try {
-            ReflectionUtils.classLoader.close();
-            FileUtils.deleteDirectory(new File(UPLOAD_PATH));
+            ReflectionUtils.close();
             FileUtils.deleteDirectory(new File(TEMP_PATH));
         } catch (IOException e) {
             System.out.println("Возникла ошибка при удалении директории " + e.getMessage());
@@ -0,0 +1,33 @@
+package com.melancholia.worker;
+
+public class WorkerState {
+
+    private final WorkerStatus status;
+    private final int running;
+    private final int queued;
+    private final int prefetchDepth;
+
+    public WorkerState(WorkerStatus status, int running, int queued, int prefetchDepth) {
+        this.status = status;
+        this.running = running;
+        this.queued = queued;
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    public WorkerStatus getStatus() {
+        return status;
+    }
+
+    public int getRunning() {
+        return running;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.melancholia.worker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Сравнение вызова @Solve через PluginMethod с прежним путём ReflectionUtils.executeMethod
+ * (setAccessible, новый экземпляр и Method.invoke с упакованными границами на каждую задачу).
+ * Запуск: mvn test-compile, затем main этого класса с test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PluginMethodBenchmark {
+
+    private static final Path ARCHIVE = Path.of("data.zip");
+    private static final BooleanSupplier NOT_CANCELLED = () -> false;
+
+    private Method instanceMethod;
+    private Method staticMethod;
+    private PluginMethod cachedInstanceMethod;
+    private PluginMethod cachedStaticMethod;
+    private int start;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        instanceMethod = SampleSolver.class.getDeclaredMethod("solve", Path.class, int.class, int.class);
+        staticMethod = SampleSolver.class.getDeclaredMethod("solveStatic", Path.class, int.class, int.class,
+                BooleanSupplier.class, long.class);
+        cachedInstanceMethod = PluginMethod.of(instanceMethod);
+        cachedStaticMethod = PluginMethod.of(staticMethod);
+    }
+
+    @Benchmark
+    public Object legacyInstance() {
+        int from = start++ & 1023;
+        return legacyExecute(instanceMethod, new Object[]{ARCHIVE, from, from + 10});
+    }
+
+    @Benchmark
+    public Object legacyStatic() {
+        int from = start++ & 1023;
+        return legacyExecute(staticMethod, new Object[]{ARCHIVE, from, from + 10, NOT_CANCELLED, Long.MAX_VALUE});
+    }
+
+    @Benchmark
+    public Object pluginMethodInstance() {
+        int from = start++ & 1023;
+        return cachedInstanceMethod.invoke(ARCHIVE, from, from + 10, NOT_CANCELLED, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public Object pluginMethodStatic() {
+        int from = start++ & 1023;
+        return cachedStaticMethod.invoke(ARCHIVE, from, from + 10, NOT_CANCELLED, Long.MAX_VALUE);
+    }
+
+    // Копия прежнего ReflectionUtils.executeMethod
+    private static Object legacyExecute(Method method, Object[] args) {
+        method.setAccessible(true);
+
+        Object instance = null;
+        if (!Modifier.isStatic(method.getModifiers())) {
+            try {
+                instance = method.getDeclaringClass().getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+
+        try {
+            return method.invoke(instance, args);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PluginMethodBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    public static class SampleSolver {
+
+        private int calls;
+
+        // Старая сигнатура: хвостовые аргументы PluginMethod отбрасывает
+        public Object solve(Path archive, int start, int end) {
+            calls++;
+            return end - start + calls;
+        }
+
+        public static Object solveStatic(Path archive, int start, int end, BooleanSupplier cancelled, long bound) {
+            return cancelled.getAsBoolean() ? null : end - start;
+        }
+
+    }
+
+}